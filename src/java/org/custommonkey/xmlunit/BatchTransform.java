@@ -0,0 +1,570 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+
+/**
+ * Applies a single stylesheet to many inputs.
+ *
+ * <p>The stylesheet is compiled once, each thread performing
+ * transformations uses a Transformer of its own created from the
+ * compiled Templates for all inputs it handles.  The Transformer is
+ * {@link Transformer#reset reset} between inputs - or replaced by a
+ * new one if it doesn't support resetting.</p>
+ *
+ * <p>Results are returned by an Iterator in the order the inputs
+ * are provided.  If more than one thread has been requested, worker
+ * threads transform the following inputs while the caller consumes
+ * a result - never more than a few inputs per thread ahead of the
+ * caller, so results don't pile up.  Worker threads that have been
+ * waiting for the caller to consume results for longer than the
+ * {@link #setWorkerIdleTimeout idle timeout} end, the caller
+ * transforms the remaining inputs itself should it resume.</p>
+ *
+ * <p>Instances may be reused for several batches, changes to the
+ * configuration only affect batches started after the change.</p>
+ */
+public class BatchTransform {
+    /** how many inputs per thread may be transformed ahead of the caller */
+    private static final int INPUTS_AHEAD_PER_THREAD = 4;
+
+    private final Templates templates;
+    private final Properties outputProperties = new Properties();
+    private final Map/*<String, Object>*/ parameters = new LinkedHashMap();
+    private int threads = 1;
+    private long workerIdleTimeout = DEFAULT_WORKER_IDLE_TIMEOUT;
+
+    /**
+     * Default number of milliseconds worker threads wait for the
+     * caller to consume results.
+     */
+    public static final long DEFAULT_WORKER_IDLE_TIMEOUT = 30000;
+
+    /**
+     * Create a batch transformation using a stylesheet in a String
+     * @param stylesheet
+     */
+    public BatchTransform(String stylesheet) {
+        this(new StreamSource(new StringReader(stylesheet)),
+             Transform.getCacheKey(stylesheet));
+    }
+
+    /**
+     * Create a batch transformation using a stylesheet in a File
+     * @param stylesheet
+     */
+    public BatchTransform(File stylesheet) {
+        this(new StreamSource(stylesheet), Transform.getCacheKey(stylesheet));
+    }
+
+    /**
+     * Create a batch transformation using a stylesheet in a Source
+     * @param stylesheetSource
+     */
+    public BatchTransform(Source stylesheetSource) {
+        this(stylesheetSource, Transform.getCacheKey(stylesheetSource));
+    }
+
+    /**
+     * Create a batch transformation using a compiled stylesheet
+     * @param stylesheet
+     */
+    public BatchTransform(Templates stylesheet) {
+        if (stylesheet == null) {
+            throw new IllegalArgumentException("stylesheet must not be null");
+        }
+        templates = stylesheet;
+    }
+
+    private BatchTransform(Source stylesheetSource, Object cacheKey) {
+        try {
+            templates = Transform.getTemplates(stylesheetSource, cacheKey);
+        } catch (TransformerConfigurationException ex) {
+            throw new ConfigurationException(ex);
+        }
+        if (templates == null) {
+            throw new ConfigurationException("failed to compile stylesheet");
+        }
+    }
+
+    /**
+     * Number of threads performing transformations.
+     *
+     * <p>Defaults to 1 which means all transformations are
+     * performed by the thread consuming the results.</p>
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Number of threads performing transformations.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Number of milliseconds worker threads wait for the caller to
+     * consume results before they end.
+     *
+     * <p>Makes sure worker threads don't linger if the caller stops
+     * consuming results without {@link Results#cancel cancelling}
+     * them - for example because an assertion failed.  Defaults to
+     * {@link #DEFAULT_WORKER_IDLE_TIMEOUT
+     * DEFAULT_WORKER_IDLE_TIMEOUT}.</p>
+     */
+    public void setWorkerIdleTimeout(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        workerIdleTimeout = millis;
+    }
+
+    /**
+     * Number of milliseconds worker threads wait for the caller to
+     * consume results before they end.
+     */
+    public long getWorkerIdleTimeout() {
+        return workerIdleTimeout;
+    }
+
+    /**
+     * Override an output property specified in the transformation stylesheet
+     * @param name
+     * @param value
+     */
+    public void setOutputProperty(String name, String value) {
+        outputProperties.setProperty(name, value);
+    }
+
+    /**
+     * Add a parameter for the transformation
+     * @param name
+     * @param value
+     */
+    public void setParameter(String name, Object value) {
+        parameters.put(name, value);
+    }
+
+    /**
+     * Transforms the given inputs one after the other.
+     *
+     * <p>A TransformerException for one input is wrapped in an
+     * XMLUnitRuntimeException thrown by the corresponding call to
+     * <code>next</code>, the remaining inputs are transformed
+     * nevertheless.</p>
+     *
+     * @param inputs Source instances to transform
+     * @return the results as DOM Documents
+     */
+    public Results getResultDocuments(Iterator/*<Source>*/ inputs) {
+        return getResults(inputs, false);
+    }
+
+    /**
+     * Transforms the given inputs one after the other.
+     *
+     * <p>A TransformerException for one input is wrapped in an
+     * XMLUnitRuntimeException thrown by the corresponding call to
+     * <code>next</code>, the remaining inputs are transformed
+     * nevertheless.</p>
+     *
+     * @param inputs Source instances to transform
+     * @return the results as Strings
+     */
+    public Results getResultStrings(Iterator/*<Source>*/ inputs) {
+        return getResults(inputs, true);
+    }
+
+    private Results getResults(Iterator inputs, boolean asString) {
+        Properties props = new Properties();
+        props.putAll(outputProperties);
+        Map params = new LinkedHashMap(parameters);
+        return threads == 1
+            ? (Results) new SequentialResults(inputs, asString, props, params)
+            : new ParallelResults(inputs, asString, props, params, threads,
+                                  workerIdleTimeout);
+    }
+
+    /**
+     * Results of a batch transformation in the order of the inputs.
+     *
+     * <p>Results that are not going to be consumed should be {@link
+     * #cancel cancelled} so worker threads stop right away rather
+     * than after the {@link BatchTransform#setWorkerIdleTimeout idle
+     * timeout}:</p>
+     *
+     * <pre>
+     * BatchTransform.Results results = batch.getResultDocuments(inputs);
+     * try {
+     *     while (results.hasNext()) {
+     *         assertXMLEqual(expected, (Document) results.next());
+     *     }
+     * } finally {
+     *     results.cancel();
+     * }
+     * </pre>
+     */
+    public abstract static class Results implements Iterator {
+        private final boolean asString;
+        private final Properties outputProperties;
+        private final Map parameters;
+
+        private Results(boolean asString, Properties outputProperties,
+                        Map parameters) {
+            this.asString = asString;
+            this.outputProperties = outputProperties;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Stops transforming inputs whose results haven't been
+         * requested, yet.
+         */
+        public abstract void cancel();
+
+        /**
+         * Not supported.
+         */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Whether any worker thread is still running.
+         */
+        boolean hasLiveWorkers() {
+            return false;
+        }
+
+        /**
+         * Creates a Transformer configured for this batch.
+         */
+        Transformer newTransformer(Templates templates)
+            throws TransformerConfigurationException {
+            return configure(Transform.newTransformer(templates));
+        }
+
+        /**
+         * A Transformer configured for this batch for the next
+         * input: the given one reset and configured again, a new one
+         * if there is none, yet, or it doesn't support resetting.
+         */
+        Transformer prepare(Transformer t, Templates templates)
+            throws TransformerConfigurationException {
+            if (t == null) {
+                return newTransformer(templates);
+            }
+            try {
+                t.reset();
+            } catch (UnsupportedOperationException ex) {
+                return newTransformer(templates);
+            } catch (NoSuchMethodError ex) {
+                // JAXP before 1.3
+                return newTransformer(templates);
+            }
+            if (XMLUnit.getURIResolver() != null) {
+                t.setURIResolver(XMLUnit.getURIResolver());
+            }
+            return configure(t);
+        }
+
+        private Transformer configure(Transformer t) {
+            t.setOutputProperties(outputProperties);
+            for (Iterator it = parameters.entrySet().iterator();
+                 it.hasNext(); ) {
+                Map.Entry e = (Map.Entry) it.next();
+                t.setParameter((String) e.getKey(), e.getValue());
+            }
+            return t;
+        }
+
+        /**
+         * Transforms a single input.
+         */
+        Object transform(Transformer t, Source input)
+            throws TransformerException {
+            Transform transform = new Transform(input, t);
+            return asString
+                ? (Object) transform.getResultString()
+                : transform.getResultDocument();
+        }
+    }
+
+    /**
+     * Transforms each input when its result is requested.
+     */
+    private final class SequentialResults extends Results {
+        private final Iterator inputs;
+        private Transformer transformer;
+        private boolean cancelled = false;
+
+        private SequentialResults(Iterator inputs, boolean asString,
+                                  Properties outputProperties,
+                                  Map parameters) {
+            super(asString, outputProperties, parameters);
+            this.inputs = inputs;
+        }
+
+        public boolean hasNext() {
+            return !cancelled && inputs.hasNext();
+        }
+
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Source input = (Source) inputs.next();
+            try {
+                transformer = prepare(transformer, templates);
+                return transform(transformer, input);
+            } catch (TransformerConfigurationException ex) {
+                throw new ConfigurationException(ex);
+            } catch (TransformerException ex) {
+                throw new XMLUnitRuntimeException("failed to transform input",
+                                                  ex);
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Hands out inputs to worker threads and the results back in
+     * input order.
+     */
+    private final class ParallelResults extends Results {
+        private final Iterator inputs;
+        private final int maxAhead;
+        private final long idleTimeout;
+        private final Thread[] workers;
+        private final Object lock = new Object();
+        /** inputs handed out to workers whose results haven't been returned */
+        private final LinkedList/*<Job>*/ pending = new LinkedList();
+        private boolean cancelled = false;
+        /** used by the consumer if it gets ahead of the workers */
+        private Transformer transformer;
+
+        private ParallelResults(Iterator inputs, boolean asString,
+                                Properties outputProperties, Map parameters,
+                                int threads, long idleTimeout) {
+            super(asString, outputProperties, parameters);
+            this.inputs = inputs;
+            this.idleTimeout = idleTimeout;
+            maxAhead = INPUTS_AHEAD_PER_THREAD * threads;
+            workers = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Thread(new Worker(),
+                                        "XMLUnit transformation worker " + i);
+                workers[i].setDaemon(true);
+                workers[i].start();
+            }
+        }
+
+        boolean hasLiveWorkers() {
+            for (int i = 0; i < workers.length; i++) {
+                if (workers[i].isAlive()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean hasNext() {
+            synchronized (lock) {
+                return !cancelled && (!pending.isEmpty() || inputs.hasNext());
+            }
+        }
+
+        public Object next() {
+            Job job;
+            boolean runHere = false;
+            boolean interrupted = false;
+            synchronized (lock) {
+                if (cancelled) {
+                    throw new NoSuchElementException();
+                }
+                if (pending.isEmpty()) {
+                    if (!inputs.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    // no worker has picked up the next input, yet
+                    job = new Job((Source) inputs.next());
+                    runHere = true;
+                } else {
+                    job = (Job) pending.getFirst();
+                    while (!job.done) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
+                    pending.remove(job);
+                    lock.notifyAll();
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (runHere) {
+                try {
+                    transformer = prepare(transformer, templates);
+                    job.run(transformer);
+                } catch (TransformerConfigurationException ex) {
+                    job.failure = ex;
+                }
+            }
+            return job.getResult();
+        }
+
+        public void cancel() {
+            synchronized (lock) {
+                cancelled = true;
+                pending.clear();
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * A single input and its result.
+         */
+        private final class Job {
+            private final Source input;
+            private Object result;
+            private Throwable failure;
+            private boolean done = false;
+
+            private Job(Source input) {
+                this.input = input;
+            }
+
+            private void run(Transformer t) {
+                try {
+                    result = transform(t, input);
+                } catch (Throwable ex) {
+                    failure = ex;
+                }
+            }
+
+            private Object getResult() {
+                if (failure instanceof TransformerConfigurationException) {
+                    throw new ConfigurationException(failure);
+                } else if (failure instanceof TransformerException) {
+                    throw new XMLUnitRuntimeException("failed to transform"
+                                                      + " input", failure);
+                } else if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                } else if (failure != null) {
+                    throw new XMLUnitRuntimeException("failed to transform"
+                                                      + " input", failure);
+                }
+                return result;
+            }
+        }
+
+        private final class Worker implements Runnable {
+            public void run() {
+                Transformer t = null;
+                while (true) {
+                    Job job;
+                    synchronized (lock) {
+                        long deadline = System.currentTimeMillis()
+                            + idleTimeout;
+                        while (!cancelled && pending.size() >= maxAhead) {
+                            long remaining =
+                                deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                // the caller has stopped consuming
+                                // results, if it resumes it
+                                // transforms the inputs itself
+                                return;
+                            }
+                            try {
+                                lock.wait(remaining);
+                            } catch (InterruptedException ex) {
+                                // nobody but cancel() is supposed to
+                                // stop us
+                            }
+                        }
+                        if (cancelled || !inputs.hasNext()) {
+                            return;
+                        }
+                        job = new Job((Source) inputs.next());
+                        pending.add(job);
+                    }
+                    try {
+                        t = prepare(t, templates);
+                        job.run(t);
+                    } catch (TransformerConfigurationException ex) {
+                        t = null;
+                        job.failure = ex;
+                    }
+                    synchronized (lock) {
+                        job.done = true;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import org.custommonkey.xmlunit.exceptions.XpathException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+/**
+ * An {@link XpathEngine XpathEngine} that can evaluate several
+ * independent XPath expressions against the same document in a
+ * single call.
+ *
+ * <p>Both engines shipping with XMLUnit implement this interface.</p>
+ */
+public interface BatchXpathEngine extends XpathEngine {
+
+    /**
+     * Execute all specified xpath syntax <code>select</code>
+     * expressions on the specified document and return the lists of
+     * nodes that match.
+     * @param selects
+     * @param document
+     * @return one list of matching nodes (could have length zero)
+     * per expression, in the order of the expressions
+     */
+    NodeList[] getMatchingNodes(String[] selects, Document document)
+        throws XpathException;
+
+    /**
+     * Evaluate the results of executing all specified xpath syntax
+     * <code>select</code> expressions on the specified document
+     * @param selects
+     * @param document
+     * @return one evaluated result per expression, in the order of
+     * the expressions
+     */
+    String[] evaluate(String[] selects, Document document)
+        throws XpathException;
+}
@@ -0,0 +1,317 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.custommonkey.xmlunit.util.IntegerBuffer;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Index over the test children of a node used by {@link
+ * DifferenceEngine#compareNodeList(List, List, int, DifferenceListener,
+ * ElementQualifier) DifferenceEngine} to find the test node a control
+ * node should be compared to.
+ *
+ * <p>Test nodes are put into buckets by node type - and for elements
+ * by the key of a {@link KeyedElementQualifier} if possible - so the
+ * candidates for a control node can be looked up directly rather
+ * than scanning all siblings.  If the ElementQualifier doesn't
+ * provide keys (for all test elements or the given control
+ * element), elements are matched by scanning all element children
+ * and invoking the qualifier pairwise.</p>
+ *
+ * <p>The matching rules are exactly the same as the ones of the
+ * linear scan used in earlier versions: starting at the control
+ * node's position (wrapping around at the end of the list) the
+ * first qualifying test node that hasn't been matched before is
+ * chosen, if there isn't any the first qualifying test node is used
+ * as fallback.</p>
+ */
+final class ChildNodeIndex {
+    /**
+     * Key used for all elements if there is no ElementQualifier.
+     */
+    private static final Object ANY_ELEMENT = new Object();
+
+    private final List testChildren;
+    private final ElementQualifier elementQualifier;
+    private final boolean textAndCDATAMatch;
+    private final boolean[] matched;
+    private final Bucket[] bucketOf;
+    private final Map/*<Object, Bucket>*/ buckets = new HashMap();
+    private final Bucket allElements;
+    private final boolean elementsKeyed;
+
+    /**
+     * @param testChildren the test nodes to match against
+     * @param elementQualifier used to determine which of the child
+     * elements qualify for comparison, may be null
+     * @param textAndCDATAMatch whether Text nodes and CDATA sections
+     * are considered to be of the same type
+     */
+    ChildNodeIndex(List testChildren, ElementQualifier elementQualifier,
+                   boolean textAndCDATAMatch) {
+        this.testChildren = testChildren;
+        this.elementQualifier = elementQualifier;
+        this.textAndCDATAMatch = textAndCDATAMatch;
+        int length = testChildren.size();
+        matched = new boolean[length];
+        bucketOf = new Bucket[length];
+
+        Object[] elementKeys = new Object[length];
+        boolean allKeyed = true;
+        IntegerBuffer elements = new IntegerBuffer(length);
+        for (int i = 0; i < length; i++) {
+            Node n = (Node) testChildren.get(i);
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                elements.append(i);
+                elementKeys[i] = getElementKey((Element) n);
+                allKeyed &= elementKeys[i] != null;
+            }
+        }
+        elementsKeyed = allKeyed;
+        allElements = new Bucket(elements.toIntArray());
+
+        Map/*<Object, IntegerBuffer>*/ indices = new HashMap();
+        for (int i = 0; i < length; i++) {
+            Object key = getBucketKey((Node) testChildren.get(i),
+                                      elementKeys[i]);
+            IntegerBuffer b = (IntegerBuffer) indices.get(key);
+            if (b == null) {
+                b = new IntegerBuffer(4);
+                indices.put(key, b);
+            }
+            b.append(i);
+        }
+        for (Iterator iter = indices.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) iter.next();
+            int[] bucketIndices = ((IntegerBuffer) entry.getValue())
+                .toIntArray();
+            Bucket b = new Bucket(bucketIndices);
+            buckets.put(entry.getKey(), b);
+            for (int i = 0; i < bucketIndices.length; i++) {
+                bucketOf[bucketIndices[i]] = b;
+            }
+        }
+    }
+
+    /**
+     * Finds the test node the given control node should be compared to.
+     * @param control the control node
+     * @param startAt index of the test node to start searching at
+     * @param useFallback whether a test node that has already been
+     * matched to a different control node may be returned if no
+     * unmatched test node qualifies
+     * @return the index of the matching test node or -1
+     */
+    int findMatch(Node control, int startAt, boolean useFallback) {
+        Object elementKey = null;
+        if (control.getNodeType() == Node.ELEMENT_NODE) {
+            if (elementsKeyed) {
+                elementKey = getElementKey((Element) control);
+            }
+            if (elementKey == null) {
+                return allElements.scan((Element) control, startAt,
+                                        useFallback);
+            }
+        }
+        Bucket b = (Bucket) buckets.get(getBucketKey(control, elementKey));
+        return b == null ? -1 : b.lookup(startAt, useFallback);
+    }
+
+    /**
+     * Records that the test node at the given index has been matched.
+     */
+    void markMatched(int index) {
+        if (!matched[index]) {
+            matched[index] = true;
+            bucketOf[index].markMatched(index);
+        }
+    }
+
+    /**
+     * Whether the test node at the given index has been matched.
+     */
+    boolean isMatched(int index) {
+        return matched[index];
+    }
+
+    private Object getBucketKey(Node n, Object elementKey) {
+        short type = n.getNodeType();
+        if (type == Node.ELEMENT_NODE && elementsKeyed) {
+            return new ElementBucketKey(elementKey);
+        }
+        if (textAndCDATAMatch && type == Node.CDATA_SECTION_NODE) {
+            type = Node.TEXT_NODE;
+        }
+        return new Short(type);
+    }
+
+    /**
+     * The key identifying the bucket of a given element, null if
+     * the element must be matched using a linear scan.
+     */
+    private Object getElementKey(Element e) {
+        if (elementQualifier == null) {
+            return ANY_ELEMENT;
+        }
+        if (elementQualifier instanceof KeyedElementQualifier) {
+            return ((KeyedElementQualifier) elementQualifier)
+                .getMatchKey(e);
+        }
+        return null;
+    }
+
+    /**
+     * Wraps element keys so they can't clash with the keys used for
+     * other node types.
+     */
+    private static final class ElementBucketKey {
+        private final Object key;
+        ElementBucketKey(Object key) {
+            this.key = key;
+        }
+        public boolean equals(Object other) {
+            return other instanceof ElementBucketKey
+                && key.equals(((ElementBucketKey) other).key);
+        }
+        public int hashCode() {
+            return key.hashCode();
+        }
+    }
+
+    /**
+     * Indices of test nodes sharing the same bucket key in document
+     * order.
+     */
+    private final class Bucket {
+        private final int[] indices;
+        /**
+         * Disjoint-set forest linking each position to the next
+         * position whose test node hasn't been matched, yet.
+         * indices.length is used as "no more unmatched nodes".
+         */
+        private final int[] nextUnmatched;
+
+        Bucket(int[] indices) {
+            this.indices = indices;
+            nextUnmatched = new int[indices.length + 1];
+            for (int i = 0; i < nextUnmatched.length; i++) {
+                nextUnmatched[i] = i;
+            }
+        }
+
+        /**
+         * First qualifying test node - all nodes in this bucket
+         * qualify - at or after startAt, wrapping around, preferring
+         * unmatched nodes.
+         */
+        int lookup(int startAt, boolean useFallback) {
+            int start = firstPositionAtOrAfter(startAt);
+            int pos = findUnmatched(start);
+            if (pos == indices.length) {
+                pos = findUnmatched(0);
+            }
+            if (pos < indices.length) {
+                return indices[pos];
+            }
+            if (useFallback && indices.length > 0) {
+                return indices[start < indices.length ? start : 0];
+            }
+            return -1;
+        }
+
+        /**
+         * Same as lookup but asks the ElementQualifier for each
+         * candidate.
+         */
+        int scan(Element control, int startAt, boolean useFallback) {
+            int start = firstPositionAtOrAfter(startAt);
+            int fallback = -1;
+            for (int i = 0; i < indices.length; i++) {
+                int pos = (start + i) % indices.length;
+                int testIndex = indices[pos];
+                if (elementQualifier.qualifyForComparison(control,
+                        (Element) testChildren.get(testIndex))) {
+                    if (!matched[testIndex]) {
+                        return testIndex;
+                    }
+                    if (fallback < 0) {
+                        fallback = testIndex;
+                    }
+                }
+            }
+            return useFallback ? fallback : -1;
+        }
+
+        void markMatched(int testIndex) {
+            int pos = firstPositionAtOrAfter(testIndex);
+            nextUnmatched[pos] = pos + 1;
+        }
+
+        private int firstPositionAtOrAfter(int testIndex) {
+            int low = 0, high = indices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (indices[mid] < testIndex) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int findUnmatched(int pos) {
+            int root = pos;
+            while (nextUnmatched[root] != root) {
+                root = nextUnmatched[root];
+            }
+            while (nextUnmatched[pos] != root) {
+                int next = nextUnmatched[pos];
+                nextUnmatched[pos] = root;
+                pos = next;
+            }
+            return root;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+/**
+ * Immutable set of options controlling a single comparison.
+ *
+ * <p>The static setters of {@link XMLUnit XMLUnit} apply to every
+ * comparison of the JVM.  {@link Diff Diff} and {@link
+ * DifferenceEngine DifferenceEngine} take a snapshot of them
+ * (see {@link XMLUnit#getComparisonSettings}) unless they have been
+ * given an instance of this class explicitly, which allows
+ * differently configured comparisons to run at the same time.</p>
+ *
+ * <p>Instances can't be modified, the <code>with...</code> methods
+ * return a copy with a single option changed:</p>
+ * <pre>
+ * ComparisonSettings settings = new ComparisonSettings()
+ *     .withIgnoreWhitespace(true).withIgnoreComments(true);
+ * </pre>
+ * @see XMLUnit for a description of the individual options
+ */
+public final class ComparisonSettings {
+    private final boolean ignoreWhitespace;
+    private final boolean ignoreComments;
+    private final boolean normalize;
+    private final boolean normalizeWhitespace;
+    private final boolean ignoreDiffBetweenTextAndCDATA;
+    private final boolean ignoreAttributeOrder;
+    private final boolean compareUnmatched;
+    private final boolean skipIdenticalSubtrees;
+    private final boolean iterativeComparison;
+    private final int comparisonThreads;
+    private final boolean modifyDocumentsInPlace;
+
+    /**
+     * Creates settings using the default value for each option -
+     * the values XMLUnit uses unless one of its setters has been
+     * called.
+     */
+    public ComparisonSettings() {
+        this(false, false, false, false, false, false, true, false, false,
+             1, false);
+    }
+
+    ComparisonSettings(boolean ignoreWhitespace, boolean ignoreComments,
+                       boolean normalize, boolean normalizeWhitespace,
+                       boolean ignoreDiffBetweenTextAndCDATA,
+                       boolean ignoreAttributeOrder,
+                       boolean compareUnmatched,
+                       boolean skipIdenticalSubtrees,
+                       boolean iterativeComparison,
+                       int comparisonThreads,
+                       boolean modifyDocumentsInPlace) {
+        this.ignoreWhitespace = ignoreWhitespace;
+        this.ignoreComments = ignoreComments;
+        this.normalize = normalize;
+        this.normalizeWhitespace = normalizeWhitespace;
+        this.ignoreDiffBetweenTextAndCDATA = ignoreDiffBetweenTextAndCDATA;
+        this.ignoreAttributeOrder = ignoreAttributeOrder;
+        this.compareUnmatched = compareUnmatched;
+        this.skipIdenticalSubtrees = skipIdenticalSubtrees;
+        this.iterativeComparison = iterativeComparison;
+        this.comparisonThreads = comparisonThreads;
+        this.modifyDocumentsInPlace = modifyDocumentsInPlace;
+    }
+
+    /**
+     * @see XMLUnit#getIgnoreWhitespace
+     */
+    public boolean getIgnoreWhitespace() {
+        return ignoreWhitespace;
+    }
+
+    /**
+     * @see XMLUnit#setIgnoreWhitespace
+     */
+    public ComparisonSettings withIgnoreWhitespace(boolean b) {
+        return new ComparisonSettings(b, ignoreComments, normalize,
+                                      normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getIgnoreComments
+     */
+    public boolean getIgnoreComments() {
+        return ignoreComments;
+    }
+
+    /**
+     * @see XMLUnit#setIgnoreComments
+     */
+    public ComparisonSettings withIgnoreComments(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, b, normalize,
+                                      normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getNormalize
+     */
+    public boolean getNormalize() {
+        return normalize;
+    }
+
+    /**
+     * @see XMLUnit#setNormalize
+     */
+    public ComparisonSettings withNormalize(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments, b,
+                                      normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getNormalizeWhitespace
+     */
+    public boolean getNormalizeWhitespace() {
+        return normalizeWhitespace;
+    }
+
+    /**
+     * @see XMLUnit#setNormalizeWhitespace
+     */
+    public ComparisonSettings withNormalizeWhitespace(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, b,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getIgnoreDiffBetweenTextAndCDATA
+     */
+    public boolean getIgnoreDiffBetweenTextAndCDATA() {
+        return ignoreDiffBetweenTextAndCDATA;
+    }
+
+    /**
+     * @see XMLUnit#setIgnoreDiffBetweenTextAndCDATA
+     */
+    public ComparisonSettings withIgnoreDiffBetweenTextAndCDATA(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace, b,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getIgnoreAttributeOrder
+     */
+    public boolean getIgnoreAttributeOrder() {
+        return ignoreAttributeOrder;
+    }
+
+    /**
+     * @see XMLUnit#setIgnoreAttributeOrder
+     */
+    public ComparisonSettings withIgnoreAttributeOrder(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA, b,
+                                      compareUnmatched, skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getCompareUnmatched
+     */
+    public boolean getCompareUnmatched() {
+        return compareUnmatched;
+    }
+
+    /**
+     * @see XMLUnit#setCompareUnmatched
+     */
+    public ComparisonSettings withCompareUnmatched(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, b,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getSkipIdenticalSubtrees
+     */
+    public boolean getSkipIdenticalSubtrees() {
+        return skipIdenticalSubtrees;
+    }
+
+    /**
+     * @see XMLUnit#setSkipIdenticalSubtrees
+     */
+    public ComparisonSettings withSkipIdenticalSubtrees(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      b, iterativeComparison,
+                                      comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getIterativeComparison
+     */
+    public boolean getIterativeComparison() {
+        return iterativeComparison;
+    }
+
+    /**
+     * @see XMLUnit#setIterativeComparison
+     */
+    public ComparisonSettings withIterativeComparison(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees, b,
+                                      comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getComparisonThreads
+     */
+    public int getComparisonThreads() {
+        return comparisonThreads;
+    }
+
+    /**
+     * @see XMLUnit#setComparisonThreads
+     */
+    public ComparisonSettings withComparisonThreads(int threads) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, threads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * @see XMLUnit#getModifyDocumentsInPlace
+     */
+    public boolean getModifyDocumentsInPlace() {
+        return modifyDocumentsInPlace;
+    }
+
+    /**
+     * @see XMLUnit#setModifyDocumentsInPlace
+     */
+    public ComparisonSettings withModifyDocumentsInPlace(boolean b) {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      b);
+    }
+}
@@ -42,8 +42,6 @@ import java.io.StringReader;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
 
-import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
-
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
@@ -73,8 +71,9 @@ import org.xml.sax.SAXException;
  */
 public class Diff 
     implements DifferenceListener, ComparisonController {
-    private final Document controlDoc;
-    private final Document testDoc;
+    private Document controlDoc;
+    private Document testDoc;
+    private final ComparisonSettings settings;
     private boolean similar = true;
     private boolean identical = true;
     private boolean compared = false;
@@ -84,6 +83,8 @@ public class Diff
     private DifferenceListener  differenceListenerDelegate;
     private ElementQualifier elementQualifierDelegate;
     private MatchTracker matchTrackerDelegate;
+    private final boolean testDocIsPrivate;
+    private boolean filteredView;
 
     /**
      * Construct a Diff that compares the XML in two Strings
@@ -115,8 +116,12 @@ public class Diff
      */
     public Diff(String control, Transform testTransform)
         throws IOException, TransformerException, SAXException {
+        // nobody else holds a reference to the result of the
+        // transformation, so there is no need to copy it
         this(XMLUnit.buildControlDocument(control),
-             testTransform.getResultDocument());
+             testTransform.getResultDocument(), null,
+             new ElementNameQualifier(), XMLUnit.getComparisonSettings(),
+             true);
     }
 
     /**
@@ -152,11 +157,52 @@ public class Diff
     public Diff(Document controlDoc, Document testDoc,
                 DifferenceEngine comparator, 
                 ElementQualifier elementQualifier) {
-        this.controlDoc = getManipulatedDocument(controlDoc);
-        this.testDoc = getManipulatedDocument(testDoc);
+        this(controlDoc, testDoc, comparator, elementQualifier,
+             XMLUnit.getComparisonSettings());
+    }
+
+    /**
+     * Construct a Diff that compares the XML in two Strings using
+     * specific settings rather than the ones configured via {@link
+     * XMLUnit XMLUnit}.
+     */
+    public Diff(String control, String test, ComparisonSettings settings)
+        throws SAXException, IOException {
+        this(XMLUnit.buildControlDocument(control),
+             XMLUnit.buildTestDocument(test), null,
+             new ElementNameQualifier(), settings);
+    }
+
+    /**
+     * Construct a Diff that compares the XML in two Documents using a
+     * specific DifferenceEngine, ElementQualifier and settings rather
+     * than the ones configured via {@link XMLUnit XMLUnit}.
+     * @param comparator the DifferenceEngine to use, a new one using
+     * the given settings is created if null
+     */
+    public Diff(Document controlDoc, Document testDoc,
+                DifferenceEngine comparator, 
+                ElementQualifier elementQualifier,
+                ComparisonSettings settings) {
+        this(controlDoc, testDoc, comparator, elementQualifier, settings,
+             false);
+    }
+
+    private Diff(Document controlDoc, Document testDoc,
+                 DifferenceEngine comparator,
+                 ElementQualifier elementQualifier,
+                 ComparisonSettings settings, boolean testDocIsPrivate) {
+        this.settings = settings;
+        this.controlDoc = controlDoc;
+        this.testDoc = testDoc;
         this.elementQualifierDelegate = elementQualifier;
         this.differenceEngine = comparator;
+        this.testDocIsPrivate = testDocIsPrivate;
         this.messages = new StringBuffer();
+        filteredView = canUseFilteredView();
+        if (!filteredView) {
+            manipulateDocuments();
+        }
     }
 
     /**
@@ -166,27 +212,14 @@ public class Diff
      */
     protected Diff(Diff prototype) {
         this(prototype.controlDoc, prototype.testDoc, prototype.differenceEngine, 
-             prototype.elementQualifierDelegate);
+             prototype.elementQualifierDelegate, prototype.settings,
+             prototype.testDocIsPrivate);
         this.differenceListenerDelegate = prototype.differenceListenerDelegate;
     }
 
     /**
-     * If {@link XMLUnit#getIgnoreWhitespace whitespace is ignored} in
-     * differences then manipulate the content to strip the redundant
-     * whitespace
-     * @param originalDoc a document making up one half of this difference
-     * @return the original document with redundant whitespace removed if
-     *  differences ignore whitespace
-     */
-    private Document getWhitespaceManipulatedDocument(Document originalDoc) {
-	return XMLUnit.getIgnoreWhitespace()
-	    ? XMLUnit.getWhitespaceStrippedDocument(originalDoc)
-	    : originalDoc;
-    }
-
-    /**
-     * Manipulates the given document according to the setting in the
-     * XMLUnit class.
+     * Manipulates the given document according to the settings of
+     * this Diff.
      *
      * <p>This may involve:</p>
      * <ul>
@@ -195,40 +228,67 @@ public class Diff
      *   <li>{@link XMLUnit.setIgnoreComments stripping comments}</li>
      *   <li>{@link XMLUnit.setNormalize normalizing Text nodes}</li>
      * </ul>
-     *     
+     *
+     * <p>All of them are applied in a single pass to a single copy
+     * of the document - or to the document itself if {@link
+     * XMLUnit#setModifyDocumentsInPlace modifying documents in place}
+     * is allowed.  The result of a transformation created by {@link
+     * #Diff(String, Transform) the Transform constructor} is never
+     * copied.</p>
+     *
+     * <p>Like in earlier versions the documents are manipulated
+     * when the Diff is constructed - or when {@link
+     * #overrideElementQualifier overrideElementQualifier} switches
+     * to a qualifier that needs the copy - so later changes to the
+     * original documents don't affect the comparison.  Not used at
+     * all if the comparison can skip the nodes instead, see {@link
+     * #canUseFilteredView canUseFilteredView}.</p>
+     *
      * @param orig a document making up one half of this difference
+     * @param isPrivate whether the document has been created by
+     * this Diff and thus may be modified
      * @return manipulated doc
      */
-    private Document getManipulatedDocument(Document orig) {
-        return getNormalizedDocument(getCommentlessDocument(getWhitespaceManipulatedDocument(orig)));
+    private Document getManipulatedDocument(Document orig,
+                                            boolean isPrivate) {
+        return DocumentManipulator.manipulate(orig, settings,
+                                              isPrivate
+                                              || settings.getModifyDocumentsInPlace());
+    }
+
+    private void manipulateDocuments() {
+        controlDoc = getManipulatedDocument(controlDoc, false);
+        testDoc = getManipulatedDocument(testDoc, testDocIsPrivate);
     }
 
     /**
-     * Removes all comment nodes if {@link XMLUnit.getIgnoreComments
-     * comments are ignored}.
-     *     
-     * @param originalDoc a document making up one half of this difference
-     * @return manipulated doc
+     * Whether the original documents can be compared by a
+     * DifferenceEngine that skips comments and whitespace-only Text
+     * nodes rather than copies with those nodes stripped.
+     *
+     * <p>This requires the engine to be created by this class and
+     * an ElementQualifier that doesn't look at child nodes.  The
+     * documents must not contain anything the manipulation would
+     * change in other ways than by removing the skipped nodes - see
+     * {@link DocumentManipulator#canBeFiltered
+     * DocumentManipulator}.</p>
+     *
+     * <p>Decided when the Diff is constructed.  In this case the
+     * comparison reads the original documents when it runs.</p>
      */
-    private Document getCommentlessDocument(Document orig) {
-        if (!XMLUnit.getIgnoreComments()) {
-            return orig;
-        }
-        try {
-            Transform commentStripper = XMLUnit.getStripCommentsTransform(orig);
-            return commentStripper.getResultDocument();
-        } catch (TransformerException e) {
-            throw new XMLUnitRuntimeException(e.getMessage(), e.getCause());
-        }
+    private boolean canUseFilteredView() {
+        return differenceEngine == null
+            && DocumentManipulator.isRequired(settings)
+            && !settings.getModifyDocumentsInPlace()
+            && ignoresChildNodes(elementQualifierDelegate)
+            && DocumentManipulator.canBeFiltered(controlDoc, settings)
+            && DocumentManipulator.canBeFiltered(testDoc, settings);
     }
 
-    private Document getNormalizedDocument(Document orig) {
-        if (!XMLUnit.getNormalize()) {
-            return orig;
-        }
-        Document d = (Document) orig.cloneNode(true);
-        d.normalize();
-        return d;
+    private static boolean ignoresChildNodes(ElementQualifier qualifier) {
+        return qualifier == null
+            || qualifier.getClass() == ElementNameQualifier.class
+            || qualifier.getClass() == ElementNameAndAttributeQualifier.class;
     }
 
     /**
@@ -238,8 +298,8 @@ public class Diff
         if (compared) {
             return;
         }
-        getDifferenceEngine().compare(controlDoc, testDoc, this,
-                                      elementQualifierDelegate);
+        getDifferenceEngine(filteredView).compare(controlDoc, testDoc, this,
+                                                  elementQualifierDelegate);
         compared = true;
     }
 
@@ -395,6 +455,10 @@ public class Diff
      */
     public void overrideElementQualifier(ElementQualifier delegate) {
         this.elementQualifierDelegate = delegate;
+        if (filteredView && !ignoresChildNodes(delegate)) {
+            filteredView = false;
+            manipulateDocuments();
+        }
     }
 
     /**
@@ -412,10 +476,13 @@ public class Diff
     /**
      * Lazily initializes the difference engine if it hasn't been set
      * via a constructor.
+     * @param filteredView whether the engine needs to skip the
+     * nodes that haven't been stripped from the documents
      */
-    private DifferenceEngine getDifferenceEngine() {
+    private DifferenceEngine getDifferenceEngine(boolean filteredView) {
         return differenceEngine == null
-            ? new DifferenceEngine(this, matchTrackerDelegate)
+            ? new DifferenceEngine(this, matchTrackerDelegate, settings,
+                                   filteredView)
             : differenceEngine;
     }
 
@@ -37,7 +37,6 @@ POSSIBILITY OF SUCH DAMAGE.
 package org.custommonkey.xmlunit;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
@@ -69,10 +68,29 @@ public class DifferenceEngine implements DifferenceConstants {
     private static final String NULL_NODE = "null";
     private static final String NOT_NULL_NODE = "not null";
     private static final String ATTRIBUTE_ABSENT = "[attribute absent]";
+    private static final int SKIP_CHILDREN = 0;
+    private static final int COMPARE_CHILDREN = 1;
+    private static final int COMPARE_DOCUMENT_ELEMENT = 2;
+    private static final Object OUTDENT = new Object();
     private final ComparisonController controller;
     private MatchTracker matchTracker;
+    /** explicitly configured settings, may be null */
+    private final ComparisonSettings configuredSettings;
+    /** settings of the comparison in progress */
+    private ComparisonSettings settings;
     private final XpathNodeTracker controlTracker;
     private final XpathNodeTracker testTracker;
+    private NodeFingerprints controlFingerprints;
+    private NodeFingerprints testFingerprints;
+    /** number of threads to compare subtrees with, less than 2 means none */
+    private int comparisonThreads;
+    /** set for engines comparing a subtree on behalf of another engine */
+    private ParallelSubtreeComparison parallelComparison;
+    /**
+     * whether the documents haven't been manipulated and comments as
+     * well as whitespace-only Text nodes need to be skipped instead
+     */
+    private final boolean filteredView;
     
     /**
      * Simple constructor that uses no MatchTracker at all.
@@ -95,12 +113,67 @@ public class DifferenceEngine implements DifferenceConstants {
      */
     public DifferenceEngine(ComparisonController controller,
                             MatchTracker matchTracker) {
+        this(controller, matchTracker, null);
+    }
+
+    /**
+     * Creates an engine using the given settings rather than the
+     * ones configured via {@link XMLUnit XMLUnit}.
+     * @param controller the instance used to determine whether a Difference
+     * detected by this class should halt further comparison or not
+     * @param matchTracker the instance that is notified on each
+     * successful match.  May be null.
+     * @param settings the options of all comparisons performed by
+     * this engine.  If null, a snapshot of XMLUnit's settings is
+     * taken at the start of each comparison.
+     */
+    public DifferenceEngine(ComparisonController controller,
+                            MatchTracker matchTracker,
+                            ComparisonSettings settings) {
+        this(controller, matchTracker, settings, false);
+    }
+
+    /**
+     * Creates an engine that compares documents which haven't been
+     * manipulated by {@link Diff Diff}.
+     * @param filteredView whether comments and whitespace-only Text
+     * nodes are to be skipped while traversing the documents if the
+     * settings ask for them to be ignored.  Diff only asks for this
+     * if {@link DocumentManipulator#canBeFiltered skipping them} is
+     * equivalent to comparing manipulated copies.
+     */
+    DifferenceEngine(ComparisonController controller,
+                     MatchTracker matchTracker,
+                     ComparisonSettings settings, boolean filteredView) {
         this.controller = controller;
         this.matchTracker = matchTracker;
+        this.configuredSettings = settings;
+        this.filteredView = filteredView;
         this.controlTracker = new XpathNodeTracker();
         this.testTracker = new XpathNodeTracker();
     }
 
+    /**
+     * Creates an engine comparing a single subtree on behalf of
+     * another engine.
+     */
+    private DifferenceEngine(ParallelSubtreeComparison parallelComparison,
+                             XpathNodeTracker controlTracker,
+                             XpathNodeTracker testTracker,
+                             NodeFingerprints controlFingerprints,
+                             NodeFingerprints testFingerprints,
+                             ComparisonSettings settings,
+                             boolean filteredView) {
+        this.controller = parallelComparison;
+        this.parallelComparison = parallelComparison;
+        this.configuredSettings = this.settings = settings;
+        this.filteredView = filteredView;
+        this.controlTracker = controlTracker;
+        this.testTracker = testTracker;
+        this.controlFingerprints = controlFingerprints;
+        this.testFingerprints = testFingerprints;
+    }
+
     /**
      * @param matchTracker the instance that is notified on each
      * successful match.  May be null.
@@ -123,18 +196,65 @@ public class DifferenceEngine implements DifferenceConstants {
                         ElementQualifier elementQualifier) {
         controlTracker.reset();
         testTracker.reset();
+        settings = getSettings();
+        if (settings.getSkipIdenticalSubtrees() && matchTracker == null
+            && control != null && test != null) {
+            boolean skipWhitespace = skipWhitespaceOnlyText();
+            controlFingerprints =
+                new NodeFingerprints(control, settings, skipWhitespace);
+            testFingerprints =
+                new NodeFingerprints(test, settings, skipWhitespace);
+        }
+        comparisonThreads = canCompareInParallel(elementQualifier)
+            ? settings.getComparisonThreads() : 0;
         try {
             compare(getNullOrNotNull(control), getNullOrNotNull(test),
                     control, test, listener, NODE_TYPE);
             if (control!=null) {
-                compareNode(control, test, listener, elementQualifier);
+                if (settings.getIterativeComparison()) {
+                    compareNodeIteratively(control, test, listener,
+                                           elementQualifier);
+                } else {
+                    compareNode(control, test, listener, elementQualifier);
+                }
             }
         } catch (DifferenceFoundException e) {
             // thrown by the protected compare() method to terminate the
             // comparison and unwind the call stack back to here
-        }       
+        } finally {
+            controlFingerprints = testFingerprints = null;
+            settings = null;
+        }
+    }
+
+    /**
+     * The settings of the comparison in progress, the configured or
+     * current global settings if no comparison is in progress.
+     */
+    private ComparisonSettings getSettings() {
+        if (settings != null) {
+            return settings;
+        }
+        return configuredSettings != null
+            ? configuredSettings : XMLUnit.getComparisonSettings();
     }
         
+    /**
+     * Subtrees are only compared in parallel if there is no
+     * MatchTracker (that would have to see matches in order as well),
+     * no subclass that may rely on seeing all calls of its
+     * overridden methods and the ElementQualifier - if any - is one
+     * of the built-in qualifiers known to be thread-safe and to leave
+     * the DOM trees alone.
+     */
+    boolean canCompareInParallel(ElementQualifier elementQualifier) {
+        return getClass() == DifferenceEngine.class && matchTracker == null
+            && (elementQualifier == null
+                || elementQualifier.getClass() == ElementNameQualifier.class
+                || elementQualifier.getClass()
+                   == ElementNameAndAttributeQualifier.class);
+    }
+
     private String getNullOrNotNull(Node aNode) {
         return aNode==null ? NULL_NODE : NOT_NULL_NODE;
     }
@@ -151,6 +271,114 @@ public class DifferenceEngine implements DifferenceConstants {
     protected void compareNode(Node control, Node test,
                                DifferenceListener listener, ElementQualifier elementQualifier) 
         throws DifferenceFoundException {
+        switch (compareNodeWithoutChildren(control, test, listener,
+                                           elementQualifier)) {
+        case COMPARE_DOCUMENT_ELEMENT:
+            Element controlElement = ((Document)control).getDocumentElement();
+            Element testElement = ((Document)test).getDocumentElement();
+            if (controlElement!=null && testElement!=null) {
+                compareNode(controlElement, testElement, listener, elementQualifier);
+            }
+            break;
+        case COMPARE_CHILDREN:
+            controlTracker.indent();
+            testTracker.indent();
+            compareNodeChildren(control, test, listener, elementQualifier);
+            controlTracker.outdent();
+            testTracker.outdent();
+            break;
+        default:
+            // identical subtree, nothing left to do
+            break;
+        }
+    }
+
+    /**
+     * Same as {@link #compareNode compareNode} but uses an explicit
+     * stack rather than recursion to descend into child nodes, so
+     * the depth of the documents is not limited by the size of the
+     * thread's stack.
+     * @see XMLUnit#setIterativeComparison
+     */
+    private void compareNodeIteratively(Node control, Node test,
+                                        DifferenceListener listener,
+                                        ElementQualifier elementQualifier)
+        throws DifferenceFoundException {
+        ArrayList/*<Object>*/ stack = new ArrayList();
+        stack.add(new Node[] {control, test});
+        while (!stack.isEmpty()) {
+            Object next = stack.remove(stack.size() - 1);
+            if (next == OUTDENT) {
+                controlTracker.outdent();
+                testTracker.outdent();
+            } else if (next instanceof NodeListMatch) {
+                NodeListMatch match = (NodeListMatch) next;
+                Node[] pair = compareNextChildNodes(match, listener);
+                if (pair != null) {
+                    stack.add(match);
+                    stack.add(pair);
+                }
+            } else {
+                Node[] pair = (Node[]) next;
+                switch (compareNodeWithoutChildren(pair[0], pair[1], listener,
+                                                   elementQualifier)) {
+                case COMPARE_DOCUMENT_ELEMENT:
+                    Element controlElement =
+                        ((Document) pair[0]).getDocumentElement();
+                    Element testElement =
+                        ((Document) pair[1]).getDocumentElement();
+                    if (controlElement!=null && testElement!=null) {
+                        stack.add(new Node[] {controlElement, testElement});
+                    }
+                    break;
+                case COMPARE_CHILDREN:
+                    controlTracker.indent();
+                    testTracker.indent();
+                    stack.add(OUTDENT);
+                    List[] children =
+                        compareNodeChildrenCount(pair[0], pair[1], listener);
+                    if (children != null) {
+                        NodeListMatch match =
+                            matchNodeList(children[0], children[1],
+                                          children[0].size(),
+                                          elementQualifier);
+                        if (shouldCompareInParallel(match)) {
+                            compareNodeListInParallel(match, listener,
+                                                      elementQualifier);
+                        } else {
+                            stack.add(match);
+                        }
+                    }
+                    break;
+                default:
+                    // identical subtree, nothing left to do
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the given nodes, the children of the nodes (or the
+     * document element for Document nodes) are left to the caller.
+     * @return whether the caller needs to compare the children or
+     * the document element
+     */
+    private int compareNodeWithoutChildren(Node control, Node test,
+                                           DifferenceListener listener,
+                                           ElementQualifier elementQualifier)
+        throws DifferenceFoundException {
+        if (parallelComparison != null
+            && parallelComparison.haltComparison(null)) {
+            throw flowControlException;
+        }
+        if (isIdenticalSubtree(control, test)) {
+            // leave the trackers in the same state a full comparison
+            // would have left them in
+            controlTracker.visited(control);
+            testTracker.visited(test);
+            return SKIP_CHILDREN;
+        }
         boolean comparable = compareNodeBasics(control, test, listener);
         boolean isDocumentNode = false;
 
@@ -186,21 +414,22 @@ public class DifferenceEngine implements DifferenceConstants {
         } 
 
         compareHasChildNodes(control, test, listener);
-        if (isDocumentNode) {
-            Element controlElement = ((Document)control).getDocumentElement();
-            Element testElement = ((Document)test).getDocumentElement();
-            if (controlElement!=null && testElement!=null) {
-                compareNode(controlElement, testElement, listener, elementQualifier);
-            }
-        } else {
-            controlTracker.indent();
-            testTracker.indent();
-            compareNodeChildren(control, test, listener, elementQualifier);
-            controlTracker.outdent();
-            testTracker.outdent();
-        }
+        return isDocumentNode ? COMPARE_DOCUMENT_ELEMENT : COMPARE_CHILDREN;
     }
     
+    /**
+     * Whether both elements are known to be identical including all
+     * their descendants.
+     * @see XMLUnit#setSkipIdenticalSubtrees
+     */
+    private boolean isIdenticalSubtree(Node control, Node test) {
+        return controlFingerprints != null
+            && control.getNodeType() == Node.ELEMENT_NODE
+            && test.getNodeType() == Node.ELEMENT_NODE
+            && controlFingerprints.identicalSubtrees(control,
+                                                     testFingerprints, test);
+    }
+
     /**
      * Compare two Documents for doctype and then element differences
      * @param control
@@ -255,7 +484,7 @@ public class DifferenceEngine implements DifferenceConstants {
     }
 
     private boolean comparingTextAndCDATA(short controlType, short testType) {
-        return XMLUnit.getIgnoreDiffBetweenTextAndCDATA() &&
+        return getSettings().getIgnoreDiffBetweenTextAndCDATA() &&
             (controlType == Node.TEXT_NODE
              && testType == Node.CDATA_SECTION_NODE
              ||
@@ -281,29 +510,52 @@ public class DifferenceEngine implements DifferenceConstants {
 
     /**
      * Tests whether a Node has children, taking ignoreComments
-     * setting into account.
+     * setting and the filtered view into account.
      */
     private Boolean hasChildNodes(Node n) {
         boolean flag = n.hasChildNodes();
-        if (flag && XMLUnit.getIgnoreComments()) {
-            List nl = nodeList2List(n.getChildNodes());
-            flag = !nl.isEmpty();
+        if (flag && (getSettings().getIgnoreComments()
+                     || skipWhitespaceOnlyText())) {
+            flag = !getChildren(n).isEmpty();
         }
         return flag ? Boolean.TRUE : Boolean.FALSE;
     }
 
+    /**
+     * Returns the Node's children as List, taking ignoreComments
+     * setting and the filtered view into account.
+     */
+    private List getChildren(Node n) {
+        return nodeList2List(n.getChildNodes(),
+                             getSettings().getIgnoreComments(),
+                             skipWhitespaceOnlyText());
+    }
+
+    /**
+     * Whether whitespace-only Text nodes are skipped rather than
+     * stripped from a copy of the document.
+     */
+    private boolean skipWhitespaceOnlyText() {
+        return filteredView && getSettings().getIgnoreWhitespace();
+    }
+
     /**
      * Returns the NodeList's Nodes as List, taking ignoreComments
-     * into account.
+     * into account and optionally skipping whitespace-only Text
+     * nodes.
      */
-    static List nodeList2List(NodeList nl) {
+    static List nodeList2List(NodeList nl, boolean ignoreComments,
+                              boolean skipWhitespaceOnlyText) {
         int len = nl.getLength();
         ArrayList l = new ArrayList(len);
         for (int i = 0; i < len; i++) {
             Node n = nl.item(i);
-            if (!XMLUnit.getIgnoreComments() || !(n instanceof Comment)) {
-                l.add(n);
+            if (ignoreComments && n instanceof Comment
+                || skipWhitespaceOnlyText
+                && DocumentManipulator.isWhitespaceOnlyText(n)) {
+                continue;
             }
+            l.add(n);
         }
         return l;
     }
@@ -320,29 +572,51 @@ public class DifferenceEngine implements DifferenceConstants {
     protected void compareNodeChildren(Node control, Node test,
                                        DifferenceListener listener, ElementQualifier elementQualifier) 
         throws DifferenceFoundException {
+        List[] children = compareNodeChildrenCount(control, test, listener);
+        if (children != null) {
+            compareNodeList(children[0], children[1], children[0].size(),
+                            listener, elementQualifier);
+        }
+    }
+
+    /**
+     * Compares the number of children and reports all children as
+     * missing if one of the nodes doesn't have any.
+     * @return the control and test children if both nodes have
+     * children that need to be compared via compareNodeList, null
+     * otherwise
+     */
+    private List[] compareNodeChildrenCount(Node control, Node test,
+                                            DifferenceListener listener)
+        throws DifferenceFoundException {
 
-        List controlChildren = nodeList2List(control.getChildNodes());
-        List testChildren = nodeList2List(test.getChildNodes());
+        List controlChildren = getChildren(control);
+        List testChildren = getChildren(test);
 
         Integer controlLength = new Integer(controlChildren.size());
         Integer testLength = new Integer(testChildren.size());
         compare(controlLength, testLength, control, test, listener,
                 CHILD_NODELIST_LENGTH);
 
-        if (control.hasChildNodes() || test.hasChildNodes()) {
-            if (!control.hasChildNodes()) {
+        // the nodes Diff would have stripped from a copy don't count
+        boolean controlHasChildren = filteredView
+            ? !controlChildren.isEmpty() : control.hasChildNodes();
+        boolean testHasChildren = filteredView
+            ? !testChildren.isEmpty() : test.hasChildNodes();
+        if (controlHasChildren || testHasChildren) {
+            if (!controlHasChildren) {
                 for (Iterator iter = testChildren.iterator(); iter.hasNext();) {
                     missingNode(null, (Node) iter.next(), listener);
                 }
-            } else if (!test.hasChildNodes()) {
+            } else if (!testHasChildren) {
                 for (Iterator iter = controlChildren.iterator(); iter.hasNext();) {
                     missingNode((Node) iter.next(), null, listener);
                 }
              } else {
-                compareNodeList(controlChildren, testChildren,
-                                controlLength.intValue(), listener, elementQualifier);
+                return new List[] {controlChildren, testChildren};
             }
         }
+        return null;
     }
 
     /**
@@ -365,7 +639,11 @@ public class DifferenceEngine implements DifferenceConstants {
                                    final DifferenceListener listener,
                                    final ElementQualifier elementQualifier) 
         throws DifferenceFoundException {
-        compareNodeList(nodeList2List(control), nodeList2List(test),
+        boolean ignoreComments = getSettings().getIgnoreComments();
+        compareNodeList(nodeList2List(control, ignoreComments,
+                                      skipWhitespaceOnlyText()),
+                        nodeList2List(test, ignoreComments,
+                                      skipWhitespaceOnlyText()),
                         numNodes, listener, elementQualifier);
     }
 
@@ -390,24 +668,159 @@ public class DifferenceEngine implements DifferenceConstants {
                                    final ElementQualifier elementQualifier) 
         throws DifferenceFoundException {
 
-        int j = 0;
+        NodeListMatch match = matchNodeList(controlChildren, testChildren,
+                                            numNodes, elementQualifier);
+        if (shouldCompareInParallel(match)) {
+            compareNodeListInParallel(match, listener, elementQualifier);
+            return;
+        }
+        Node[] pair;
+        while ((pair = compareNextChildNodes(match, listener)) != null) {
+            compareNode(pair[0], pair[1], listener, elementQualifier);
+        }
+    }
+
+    /**
+     * Whether the matched pairs of child nodes justify using
+     * several threads - i.e. there are at least as many pairs of
+     * elements with children as there are threads.
+     */
+    private boolean shouldCompareInParallel(NodeListMatch match) {
+        if (comparisonThreads < 2) {
+            return false;
+        }
+        int candidates = 0;
+        for (int i = 0; i < match.matchingNodeIndexes.length; i++) {
+            int j = match.matchingNodeIndexes[i];
+            if (j >= 0
+                && isElementWithChildren((Node) match.controlChildren.get(i),
+                                         (Node) match.testChildren.get(j))
+                && ++candidates >= comparisonThreads) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isElementWithChildren(Node control, Node test) {
+        return control.getNodeType() == Node.ELEMENT_NODE
+            && test.getNodeType() == Node.ELEMENT_NODE
+            && (control.hasChildNodes() || test.hasChildNodes());
+    }
+
+    /**
+     * Same as the loop in compareNodeList but hands pairs of elements
+     * with children to worker threads.
+     *
+     * <p>Each worker uses copies of the XpathNodeTracker instances
+     * in the state they'd be in when the pair was compared by this
+     * thread.  Anything the workers report is replayed to the
+     * listener in document order and the first difference that
+     * halts the comparison cancels all workers.</p>
+     * @see XMLUnit#setComparisonThreads
+     */
+    private void compareNodeListInParallel(NodeListMatch match,
+                                           DifferenceListener listener,
+                                           ElementQualifier elementQualifier)
+        throws DifferenceFoundException {
+        XpathNodeTracker controlScout = controlTracker.copy();
+        XpathNodeTracker testScout = testTracker.copy();
+        List subtrees = new ArrayList();
+        ParallelSubtree[] subtreeByControlIndex =
+            new ParallelSubtree[match.matchingNodeIndexes.length];
+        for (int i = 0; i < match.matchingNodeIndexes.length; i++) {
+            Node control = (Node) match.controlChildren.get(i);
+            int j = match.matchingNodeIndexes[i];
+            if (j >= 0) {
+                Node test = (Node) match.testChildren.get(j);
+                if (isElementWithChildren(control, test)) {
+                    ParallelSubtreeComparison.prepareForConcurrentReads(control);
+                    ParallelSubtreeComparison.prepareForConcurrentReads(test);
+                    ParallelSubtree subtree =
+                        new ParallelSubtree(control, test,
+                                            controlScout.copy(),
+                                            testScout.copy(),
+                                            elementQualifier);
+                    subtrees.add(subtree);
+                    subtreeByControlIndex[i] = subtree;
+                }
+                testScout.visited(test);
+            }
+            controlScout.visited(control);
+        }
+
+        ParallelSubtreeComparison parallel =
+            new ParallelSubtreeComparison(subtrees, comparisonThreads);
+        parallel.start();
+        try {
+            Node[] pair;
+            while ((pair = compareNextChildNodes(match, listener)) != null) {
+                ParallelSubtree subtree =
+                    subtreeByControlIndex[match.position - 1];
+                if (subtree == null) {
+                    compareSubtree(pair[0], pair[1], listener,
+                                      elementQualifier);
+                } else {
+                    replay(parallel.awaitEvents(subtree), listener);
+                    controlTracker.visited(pair[0]);
+                    testTracker.visited(pair[1]);
+                }
+            }
+        } finally {
+            parallel.cancel();
+        }
+    }
+
+    private void compareSubtree(Node control, Node test,
+                                   DifferenceListener listener,
+                                   ElementQualifier elementQualifier)
+        throws DifferenceFoundException {
+        if (getSettings().getIterativeComparison()) {
+            compareNodeIteratively(control, test, listener, elementQualifier);
+        } else {
+            compareNode(control, test, listener, elementQualifier);
+        }
+    }
+
+    /**
+     * Passes events recorded by a worker on to the listener.
+     */
+    private void replay(List events, DifferenceListener listener)
+        throws DifferenceFoundException {
+        for (Iterator iter = events.iterator(); iter.hasNext(); ) {
+            Object event = iter.next();
+            if (event instanceof Difference) {
+                Difference difference = (Difference) event;
+                listener.differenceFound(difference);
+                if (controller.haltComparison(difference)) {
+                    throw flowControlException;
+                }
+            } else {
+                Node[] skipped = (Node[]) event;
+                listener.skippedComparison(skipped[0], skipped[1]);
+            }
+        }
+    }
+
+    /**
+     * Finds the test node each control node is going to be compared to.
+     */
+    private NodeListMatch matchNodeList(List controlChildren,
+                                        List testChildren, int numNodes,
+                                        ElementQualifier elementQualifier) {
+        ComparisonSettings settings = getSettings();
         final int lastTestNode = testChildren.size() - 1;
         testTracker.preloadChildList(testChildren);
 
-        HashMap/*<Node, Node>*/ matchingNodes = new HashMap();
-        HashMap/*<Node, Integer>*/ matchingNodeIndexes = new HashMap();
-
-        List/*<Node>*/ unmatchedTestNodes = new ArrayList(testChildren);
+        ChildNodeIndex testIndex =
+            new ChildNodeIndex(testChildren, elementQualifier,
+                               settings.getIgnoreDiffBetweenTextAndCDATA());
+        int[] matchingNodeIndexes = new int[numNodes];
 
         // first pass to find the matching nodes in control and test docs
         for (int i=0; i < numNodes; ++i) {
             Node nextControl = (Node) controlChildren.get(i);
-            boolean matchOnElement = nextControl instanceof Element;
-            short findNodeType = nextControl.getNodeType();
             int startAt = ( i > lastTestNode ? lastTestNode : i);
-            j = startAt;
-            
-            boolean matchFound = false;
 
             /*
              * XMLUnit 1.2 and earlier don't check whether the
@@ -431,80 +844,78 @@ public class DifferenceEngine implements DifferenceConstants {
              * (multiply-)matched node if none could be found.  Yes,
              * this is strange.
              */
-            int fallbackMatch = -1;
-
-            while (!matchFound) {
-                Node t = (Node) testChildren.get(j);
-                if (findNodeType == t.getNodeType()
-                    || comparingTextAndCDATA(findNodeType, t.getNodeType())) {
-                    matchFound = !matchOnElement
-                        || elementQualifier == null
-                        || elementQualifier
-                        .qualifyForComparison((Element) nextControl,
-                                              (Element) t);
-                }
-                if (matchFound && !unmatchedTestNodes.contains(t)) {
-                    /*
-                     * test node already matched to a different
-                     * control node, try the other test nodes first
-                     * but keep this as "fallback" (unless there
-                     * already is a fallback)
-                     */
-                    if (fallbackMatch < 0) {
-                        fallbackMatch = j;
-                    }
-                    matchFound = false;
-                }
-                if (!matchFound) {
-                    ++j;
-                    if (j > lastTestNode) {
-                        j = 0;
+            int j = startAt < 0 ? -1
+                : testIndex.findMatch(nextControl, startAt,
+                                      settings.getCompareUnmatched());
+            matchingNodeIndexes[i] = j;
+            if (j >= 0) {
+                testIndex.markMatched(j);
+            }
+        }
+
+        // next, match the remaining control nodes against the first
+        // test nodes that didn't match any other control nodes
+        if (settings.getCompareUnmatched()) {
+            int firstUnmatched = 0;
+            for (int i=0; i < numNodes; ++i) {
+                if (matchingNodeIndexes[i] < 0) {
+                    while (firstUnmatched <= lastTestNode
+                           && testIndex.isMatched(firstUnmatched)) {
+                        ++firstUnmatched;
                     }
-                    if (j == startAt) {
-                        // been through all children
-                        break;
+                    if (firstUnmatched <= lastTestNode) {
+                        matchingNodeIndexes[i] = firstUnmatched;
+                        testIndex.markMatched(firstUnmatched);
                     }
                 }
             }
-            if (!matchFound && XMLUnit.getCompareUnmatched()
-                && fallbackMatch >= 0) {
-                matchFound = true;
-                j = fallbackMatch;
-            }
-            if (matchFound) {
-                matchingNodes.put(nextControl, testChildren.get(j));
-                matchingNodeIndexes.put(nextControl, new Integer(j));
-                unmatchedTestNodes.remove(testChildren.get(j));
-            }
         }
+        return new NodeListMatch(controlChildren, testChildren,
+                                 matchingNodeIndexes, testIndex);
+    }
 
-        // next, do the actual comparision on those that matched - or
-        // match them against the first test nodes that didn't match
-        // any other control nodes
-        for (int i=0; i < numNodes; ++i) {
-            Node nextControl = (Node) controlChildren.get(i);
-            Node nextTest = (Node) matchingNodes.get(nextControl);
-            Integer testIndex = (Integer) matchingNodeIndexes.get(nextControl);
-            if (nextTest == null && XMLUnit.getCompareUnmatched()
-                && !unmatchedTestNodes.isEmpty()) {
-                nextTest = (Node) unmatchedTestNodes.get(0);
-                testIndex = new Integer(testChildren.indexOf(nextTest));
-                unmatchedTestNodes.remove(0);
-            }
-            if (nextTest != null) {
-                compareNode(nextControl, nextTest, listener, elementQualifier);
-                compare(new Integer(i), testIndex,
-                        nextControl, nextTest, listener,
-                        CHILD_NODELIST_SEQUENCE);
-            } else {
-                missingNode(nextControl, null, listener);
+    /**
+     * Moves on to the next control node of a NodeListMatch that has a
+     * matching test node.
+     *
+     * <p>Completes the comparison of the previously returned pair of
+     * nodes by comparing their positions and reports all control
+     * nodes without a matching test node that are encountered.  Once
+     * all control nodes have been handled, reports all test nodes
+     * that haven't been matched.</p>
+     * @return the next pair of nodes to compare, null if there is
+     * none
+     */
+    private Node[] compareNextChildNodes(NodeListMatch match,
+                                         DifferenceListener listener)
+        throws DifferenceFoundException {
+        if (match.current != null) {
+            compare(new Integer(match.position - 1),
+                    new Integer(match.matchingNodeIndexes[match.position - 1]),
+                    match.current[0], match.current[1], listener,
+                    CHILD_NODELIST_SEQUENCE);
+            match.current = null;
+        }
+        while (match.position < match.matchingNodeIndexes.length) {
+            int i = match.position++;
+            Node nextControl = (Node) match.controlChildren.get(i);
+            int j = match.matchingNodeIndexes[i];
+            if (j >= 0) {
+                match.current =
+                    new Node[] {nextControl,
+                                (Node) match.testChildren.get(j)};
+                return match.current;
             }
+            missingNode(nextControl, null, listener);
         }
 
         // now handle remaining unmatched test nodes
-        for (Iterator iter = unmatchedTestNodes.iterator(); iter.hasNext();) {
-            missingNode(null, (Node) iter.next(), listener);
+        for (int j = 0; j < match.testChildren.size(); ++j) {
+            if (!match.testIndex.isMatched(j)) {
+                missingNode(null, (Node) match.testChildren.get(j), listener);
+            }
         }
+        return null;
     }
 
     private void missingNode(Node control, Node test,
@@ -611,7 +1022,7 @@ public class DifferenceEngine implements DifferenceConstants {
                 } else if (compareTo != null) {
                     compareAttribute(nextAttr, compareTo, listener);
 
-                    if (!XMLUnit.getIgnoreAttributeOrder()) {
+                    if (!getSettings().getIgnoreAttributeOrder()) {
                         Attr attributeItem = (Attr) testAttr.item(i);
                         String testAttrName = ATTRIBUTE_ABSENT;
                         if (attributeItem != null) {
@@ -800,7 +1211,7 @@ public class DifferenceEngine implements DifferenceConstants {
      */
     protected void compareComment(Comment control, Comment test,
                                   DifferenceListener listener) throws DifferenceFoundException {
-        if (!XMLUnit.getIgnoreComments()) {
+        if (!getSettings().getIgnoreComments()) {
             compareCharacterData(control, test, listener, COMMENT_VALUE);
         }
     }
@@ -902,6 +1313,11 @@ public class DifferenceEngine implements DifferenceConstants {
     /**
      * If the expected and actual values are unequal then inform the listener of
      *  a difference and throw a DifferenceFoundException.
+     *
+     * <p>The Difference instance and its NodeDetails (including the
+     * XPath locations) are only created if there is anybody
+     * interested in them - i.e. if the values are unequal or a
+     * MatchTracker has been set.</p>
      * @param expected
      * @param actual
      * @param control
@@ -915,6 +1331,33 @@ public class DifferenceEngine implements DifferenceConstants {
                            Difference difference, XpathNodeTracker controlLoc,
                            XpathNodeTracker testLoc)
         throws DifferenceFoundException {
+        boolean unequal = unequal(expected, actual);
+        if (!unequal && matchTracker == null) {
+            return;
+        }
+        Difference differenceInstance =
+            createDifference(expected, actual, control, test, difference,
+                             controlLoc, testLoc);
+        if (unequal) {
+            listener.differenceFound(differenceInstance);
+            if (controller.haltComparison(differenceInstance)) {
+                throw flowControlException;
+            }
+        } else {
+            matchTracker.matchFound(differenceInstance);
+        }
+    }
+
+    /**
+     * Creates the Difference instance passed to the listener or
+     * MatchTracker, capturing the current XPath locations of both
+     * trackers.
+     */
+    private Difference createDifference(Object expected, Object actual,
+                                        Node control, Node test,
+                                        Difference difference,
+                                        XpathNodeTracker controlLoc,
+                                        XpathNodeTracker testLoc) {
         NodeDetail controlDetail = new NodeDetail(String.valueOf(expected),
                                                   control,
                                                   controlLoc == null ? null
@@ -923,16 +1366,7 @@ public class DifferenceEngine implements DifferenceConstants {
                                                test,
                                                testLoc == null ? null
                                                : testLoc.toXpathString());
-        Difference differenceInstance = new Difference(difference, 
-                                                       controlDetail, testDetail);
-        if (unequal(expected, actual)) {
-            listener.differenceFound(differenceInstance);
-            if (controller.haltComparison(differenceInstance)) {
-                throw flowControlException;
-            }
-        } else if (matchTracker != null) {
-            matchTracker.matchFound(differenceInstance);
-        }
+        return new Difference(difference, controlDetail, testDetail);
     }
 
     /**
@@ -953,11 +1387,13 @@ public class DifferenceEngine implements DifferenceConstants {
      *  into account if necessary)
      */
     private boolean unequalNotNull(Object expected, Object actual) {
-        if ((XMLUnit.getIgnoreWhitespace() || XMLUnit.getNormalizeWhitespace())
+        ComparisonSettings settings = getSettings();
+        if ((settings.getIgnoreWhitespace()
+             || settings.getNormalizeWhitespace())
             && expected instanceof String && actual instanceof String) {
             String expectedString = ((String) expected).trim();
             String actualString = ((String) actual).trim();
-            if (XMLUnit.getNormalizeWhitespace()) {
+            if (settings.getNormalizeWhitespace()) {
                 expectedString = normalizeWhitespace(expectedString);
                 actualString = normalizeWhitespace(actualString);
             }
@@ -1001,24 +1437,85 @@ public class DifferenceEngine implements DifferenceConstants {
         if (onNode != null && onNode instanceof Attr) {
             onNode = ((Attr) onNode).getOwnerElement();
         }
-        while (onNode != null && onNode.getNodeType() != Node.ELEMENT_NODE) {
-            onNode = onNode.getParentNode();
+        for (; onNode != null; onNode = onNode.getParentNode()) {
+            if (onNode.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            NamedNodeMap attrs = onNode.getAttributes();
+            Attr attr = null;
+            if (prefix == null || "".equals(prefix)) {
+                attr = (Attr) attrs.getNamedItem(XMLConstants.XMLNS_PREFIX);
+            } else {
+                attr = (Attr) attrs.getNamedItemNS(XMLConstants.XMLNS_ATTRIBUTE_URI, prefix);
+            }
+            if (attr != null) {
+                return attr.getValue();
+            }
         }
-        if (onNode == null) {
-            return null;
+        return null;
+    }
+
+    /**
+     * The result of matching the children of two nodes and the
+     * progress made comparing them.
+     */
+    private static final class NodeListMatch {
+        private final List controlChildren;
+        private final List testChildren;
+        /** index of the matching test node for each control node or -1 */
+        private final int[] matchingNodeIndexes;
+        private final ChildNodeIndex testIndex;
+        /** next control node to handle */
+        private int position = 0;
+        /** the pair of nodes currently being compared */
+        private Node[] current;
+
+        private NodeListMatch(List controlChildren, List testChildren,
+                              int[] matchingNodeIndexes,
+                              ChildNodeIndex testIndex) {
+            this.controlChildren = controlChildren;
+            this.testChildren = testChildren;
+            this.matchingNodeIndexes = matchingNodeIndexes;
+            this.testIndex = testIndex;
         }
+    }
 
-        NamedNodeMap attrs = onNode.getAttributes();
-        Attr attr = null;
-        if (prefix == null || "".equals(prefix)) {
-            attr = (Attr) attrs.getNamedItem(XMLConstants.XMLNS_PREFIX);
-        } else {
-            attr = (Attr) attrs.getNamedItemNS(XMLConstants.XMLNS_ATTRIBUTE_URI, prefix);
+    /**
+     * A pair of elements compared by a worker thread.
+     */
+    private final class ParallelSubtree
+        extends ParallelSubtreeComparison.Subtree {
+        private final Node control;
+        private final Node test;
+        private final XpathNodeTracker controlTracker;
+        private final XpathNodeTracker testTracker;
+        private final ElementQualifier elementQualifier;
+
+        private ParallelSubtree(Node control, Node test,
+                                XpathNodeTracker controlTracker,
+                                XpathNodeTracker testTracker,
+                                ElementQualifier elementQualifier) {
+            this.control = control;
+            this.test = test;
+            this.controlTracker = controlTracker;
+            this.testTracker = testTracker;
+            this.elementQualifier = elementQualifier;
         }
-        if (attr != null) {
-            return attr.getValue();
+
+        void compare(DifferenceListener listener,
+                     ParallelSubtreeComparison comparison) {
+            DifferenceEngine worker =
+                new DifferenceEngine(comparison,
+                                     controlTracker, testTracker,
+                                     controlFingerprints, testFingerprints,
+                                     settings, filteredView);
+            try {
+                worker.compareSubtree(control, test, listener,
+                                         elementQualifier);
+            } catch (DifferenceFoundException e) {
+                // the comparison has been cancelled
+            }
         }
-        return findNamespaceURIForPrefix(onNode.getParentNode(), prefix);
     }
 
     /**
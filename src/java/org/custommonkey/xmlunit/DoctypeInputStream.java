@@ -48,6 +48,8 @@ import java.io.IOException;
  * for a byte stream containing XML markup.
  * Used by Validator class to wrap an InputStrea, when performing validation of a
  * document against a DTD.
+ * <br />Only the prolog of the original source is buffered, the
+ * content following the root element's start is passed through.
  * <br />Examples and more at <a href="http://xmlunit.sourceforge.net"/>xmlunit.sourceforge.net</a>
  */
 public class DoctypeInputStream extends InputStream {
@@ -101,6 +103,32 @@ public class DoctypeInputStream extends InputStream {
         return support.read();
     }
 
+    /**
+     * Read DOCTYPE-replaced content from the wrapped InputStream
+     * @return The number of bytes read, or -1 if the end of the
+     *  stream has been reached
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int prefixRead = support.readPrefix(b, off, len);
+        if (prefixRead == -1) {
+            return wrappedStream.read(b, off, len);
+        }
+        if (prefixRead < len && wrappedStream.available() > 0) {
+            int originalRead =
+                wrappedStream.read(b, off + prefixRead, len - prefixRead);
+            if (originalRead > 0) {
+                prefixRead += originalRead;
+            }
+        }
+        return prefixRead;
+    }
+
     public void close() throws IOException {
         wrappedStream.close();
     }
@@ -47,6 +47,8 @@ import java.io.Reader;
  * for a character stream containing XML markup.
  * Used by Validator class to wrap a Reader when performing validation of a
  * document against a DTD.
+ * <br />Only the prolog of the original source is buffered, the
+ * content following the root element's start is passed through.
  * <br />Examples and more at <a href="http://xmlunit.sourceforge.net"/>xmlunit.sourceforge.net</a>
  */
 public class DoctypeReader extends Reader {
@@ -95,25 +97,45 @@ public class DoctypeReader extends Reader {
     private StringBuffer getContent(Reader originalSource)
         throws IOException {
         if (sourceBuffer.length() == 0) {
-            BufferedReader bufferedReader;
-            if (originalSource instanceof BufferedReader) {
-                bufferedReader = (BufferedReader) originalSource;
-            } else {
-                bufferedReader = new BufferedReader(originalSource);
-            }
+            // line separators are normalized the same way
+            // BufferedReader.readLine would see them, a line
+            // separator at the very end is dropped
             String newline = System.getProperty("line.separator");
-            String source;
-            boolean atFirstLine = true;
-            while ((source = bufferedReader.readLine()) != null) {
-                if (atFirstLine) {
-                    atFirstLine = false;
-                } else {
-                    sourceBuffer.append(newline);
+            char[] buffer = new char[8192];
+            boolean pendingNewline = false;
+            boolean afterCR = false;
+            int charsRead;
+            while ((charsRead = originalSource.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < charsRead; i++) {
+                    char c = buffer[i];
+                    if (c == '\n' || c == '\r') {
+                        sourceBuffer.append(buffer, start, i - start);
+                        start = i + 1;
+                        if (c == '\n' && afterCR) {
+                            // second half of \r\n
+                            afterCR = false;
+                            continue;
+                        }
+                        if (pendingNewline) {
+                            sourceBuffer.append(newline);
+                        }
+                        pendingNewline = true;
+                        afterCR = c == '\r';
+                    } else {
+                        if (pendingNewline) {
+                            sourceBuffer.append(buffer, start, i - start);
+                            sourceBuffer.append(newline);
+                            start = i;
+                            pendingNewline = false;
+                        }
+                        afterCR = false;
+                    }
                 }
-                sourceBuffer.append(source);
+                sourceBuffer.append(buffer, start, charsRead - start);
             }
 
-            bufferedReader.close();
+            originalSource.close();
         }
 
         return sourceBuffer;
@@ -214,12 +236,24 @@ public class DoctypeReader extends Reader {
      * @throws IOException
      */
     public int read(char cbuf[], int off, int len) throws IOException {
-        int startPos = off;
-        int currentlyRead;
-        while (off - startPos < len && (currentlyRead = read()) != -1) {
-            cbuf[off++] = (char) currentlyRead;
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int prefixRead = support.readPrefix(cbuf, off, len);
+        if (prefixRead == -1) {
+            return originalReader.read(cbuf, off, len);
+        }
+        if (prefixRead < len && originalReader.ready()) {
+            int originalRead =
+                originalReader.read(cbuf, off + prefixRead, len - prefixRead);
+            if (originalRead > 0) {
+                prefixRead += originalRead;
+            }
         }
-        return off == startPos && len != 0 ? -1 : off - startPos;
+        return prefixRead;
     }
 
     /**
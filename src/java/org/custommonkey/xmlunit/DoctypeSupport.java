@@ -46,6 +46,11 @@ import org.custommonkey.xmlunit.util.IntegerBuffer;
  *
  * <p>When used with DoctypeInputStream it assumes that the whole
  * DOCTYPE declaration consists of US-ASCII characters.</p>
+ *
+ * <p>Only the prolog of the original is read ahead - up to the start
+ * of the root element.  Together with the new declaration it forms a
+ * prefix that is handed out first, after that callers may read the
+ * original directly.</p>
  */
 final class DoctypeSupport {
 
@@ -63,9 +68,10 @@ final class DoctypeSupport {
 
     private boolean hasSplit;
     private final Readable original;
-    private Readable decl;
-    private Readable beforeDoctype;
-    private Readable afterDoctype;
+    private final IntegerBuffer decl;
+    /** prolog read ahead, the new declaration and whatever follows it */
+    private int[] prefix;
+    private int prefixPos;
 
     /**
      * Encapsulates a DOCTYPE declaration for the given name and system id.
@@ -98,7 +104,7 @@ final class DoctypeSupport {
             }
         }
 
-        decl = new IntBufferReadable(buf);
+        decl = buf;
     }
 
     /**
@@ -106,32 +112,52 @@ final class DoctypeSupport {
      * @return -1 if the end of the declaration has been reached.
      */
     int read() throws IOException {
-        int nextInt = -1;
         if (!hasSplit) {
             split();
         }
-        if (beforeDoctype != null) {
-            nextInt = beforeDoctype.read();
-            if (nextInt == -1) {
-                beforeDoctype = null;
-            }
+        if (prefixPos < prefix.length) {
+            return prefix[prefixPos++];
         }
-        if (nextInt == -1 && decl != null) {
-            nextInt = decl.read();
-            if (nextInt == -1) {
-                decl = null;
-            }
+        return original.read();
+    }
+
+    /**
+     * Copies characters of the prefix.
+     * @return the number of characters copied, -1 if the whole
+     * prefix has been read and the caller should read the original
+     * instead.
+     */
+    int readPrefix(char[] cbuf, int off, int len) throws IOException {
+        if (!hasSplit) {
+            split();
         }
-        if (nextInt == -1 && afterDoctype != null) {
-            nextInt = afterDoctype.read();
-            if (nextInt == -1) {
-                afterDoctype = null;
-            }
+        int count = Math.min(len, prefix.length - prefixPos);
+        if (count <= 0) {
+            return -1;
+        }
+        for (int i = 0; i < count; i++) {
+            cbuf[off + i] = (char) prefix[prefixPos++];
         }
-        if (nextInt == -1) {
-            nextInt = original.read();
+        return count;
+    }
+
+    /**
+     * Copies bytes of the prefix.
+     * @return the number of bytes copied, -1 if the whole prefix has
+     * been read and the caller should read the original instead.
+     */
+    int readPrefix(byte[] b, int off, int len) throws IOException {
+        if (!hasSplit) {
+            split();
         }
-        return nextInt;
+        int count = Math.min(len, prefix.length - prefixPos);
+        if (count <= 0) {
+            return -1;
+        }
+        for (int i = 0; i < count; i++) {
+            b[off + i] = (byte) prefix[prefixPos++];
+        }
+        return count;
     }
 
     /**
@@ -230,10 +256,12 @@ final class DoctypeSupport {
             }
         }
 
-        beforeDoctype = before.size() > 0
-            ? new IntBufferReadable(before) : null;
-        afterDoctype = after.size() > 0
-            ? new IntBufferReadable(after) : null;
+        IntegerBuffer all =
+            new IntegerBuffer(before.size() + decl.size() + after.size());
+        all.append(before.toIntArray());
+        all.append(decl.toIntArray());
+        all.append(after.toIntArray());
+        prefix = all.toIntArray();
     }
 
     private int[] readUntilCloseCharIsReached() throws IOException {
@@ -251,16 +279,5 @@ final class DoctypeSupport {
         }
         return i.toIntArray();
     }
-    
-    private static class IntBufferReadable implements Readable {
-        private final int[] buf;
-        private int off;
-        IntBufferReadable(IntegerBuffer b) {
-            buf = b.toIntArray();
-        }
-        public int read() {
-            return off >= buf.length ? -1 : buf[off++];
-        }
-    }
 
 }
@@ -0,0 +1,316 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * Applies the document manipulations requested by the settings of a
+ * {@link Diff Diff} - stripping whitespace, stripping comments and
+ * normalizing Text nodes - in a single pass over the tree.
+ *
+ * <p>Comment stripping used to be done by an XSLT identity
+ * transformation, the result of which differs from the original tree
+ * in more than just the missing comments: CDATA sections have been
+ * turned into Text nodes, adjacent Text nodes merged, entity
+ * references expanded, attributes with default values turned into
+ * specified attributes and the document type declaration dropped.
+ * All of this is emulated here so comparisons ignoring comments don't
+ * change their outcome.</p>
+ *
+ * <p>Most documents don't contain any of the constructs that would
+ * make a difference, though.  For those {@link #canBeFiltered
+ * canBeFiltered} returns true and DifferenceEngine can simply skip
+ * comments and whitespace-only Text nodes while traversing the
+ * original document instead of comparing a manipulated copy.</p>
+ */
+final class DocumentManipulator {
+    private final boolean stripWhitespace;
+    private final boolean stripComments;
+    private final boolean mergeText;
+
+    private DocumentManipulator(boolean stripWhitespace,
+                                boolean stripComments, boolean normalize) {
+        this.stripWhitespace = stripWhitespace;
+        this.stripComments = stripComments;
+        mergeText = stripComments || normalize;
+    }
+
+    /**
+     * Manipulates the given document according to the settings.
+     * @param inPlace whether the given document may be modified,
+     * otherwise a single copy is made if any manipulation is
+     * required at all
+     * @return the manipulated document
+     */
+    static Document manipulate(Document doc, ComparisonSettings settings,
+                               boolean inPlace) {
+        if (doc == null || !isRequired(settings)) {
+            return doc;
+        }
+        Document result = inPlace ? doc : (Document) doc.cloneNode(true);
+        new DocumentManipulator(settings.getIgnoreWhitespace(),
+                                settings.getIgnoreComments(),
+                                settings.getNormalize())
+            .manipulateChildren(result);
+        return result;
+    }
+
+    /**
+     * Whether the settings ask for any manipulation at all.
+     */
+    static boolean isRequired(ComparisonSettings settings) {
+        return settings.getIgnoreWhitespace() || settings.getIgnoreComments()
+            || settings.getNormalize();
+    }
+
+    /**
+     * Whether comparing the given document while skipping comments
+     * and whitespace-only Text nodes - as requested by the settings -
+     * yields the same result as comparing the manipulated document.
+     *
+     * <p>The document is only read, never modified.</p>
+     */
+    static boolean canBeFiltered(Document doc, ComparisonSettings settings) {
+        return doc == null
+            || new DocumentManipulator(settings.getIgnoreWhitespace(),
+                                       settings.getIgnoreComments(),
+                                       settings.getNormalize())
+            .canBeFiltered(doc);
+    }
+
+    /**
+     * Walks the tree the same way {@link #manipulateChildren
+     * manipulateChildren} does, looking for any node the filter
+     * would treat differently.
+     */
+    private boolean canBeFiltered(Document doc) {
+        List/*<Node>*/ parents = new ArrayList();
+        parents.add(doc);
+        while (!parents.isEmpty()) {
+            Node parent = (Node) parents.remove(parents.size() - 1);
+            boolean previousWasText = false;
+            for (Node child = parent.getFirstChild(); child != null;
+                 child = child.getNextSibling()) {
+                switch (child.getNodeType()) {
+                case Node.COMMENT_NODE:
+                    if (!stripComments) {
+                        previousWasText = false;
+                    }
+                    break;
+                case Node.DOCUMENT_TYPE_NODE:
+                case Node.ENTITY_REFERENCE_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    if (stripComments) {
+                        return false;
+                    }
+                    previousWasText = false;
+                    break;
+                case Node.TEXT_NODE:
+                    String value = ((Text) child).getData();
+                    if (stripWhitespace && value.trim().length() == 0) {
+                        break;
+                    }
+                    if (mergeText
+                        && (previousWasText || value.length() == 0)) {
+                        return false;
+                    }
+                    previousWasText = true;
+                    break;
+                case Node.ELEMENT_NODE:
+                    // even a plain copy made by cloneNode has all
+                    // attributes specified
+                    if (hasUnspecifiedAttributes(child.getAttributes())) {
+                        return false;
+                    }
+                    parents.add(child);
+                    previousWasText = false;
+                    break;
+                default:
+                    previousWasText = false;
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the given node is a Text node that would be stripped
+     * when ignoring whitespace.
+     */
+    static boolean isWhitespaceOnlyText(Node n) {
+        return n.getNodeType() == Node.TEXT_NODE
+            && ((Text) n).getData().trim().length() == 0;
+    }
+
+    /**
+     * Walks the tree without recursion, handling the children of one
+     * parent node at a time.
+     */
+    private void manipulateChildren(Document doc) {
+        List/*<Node>*/ parents = new ArrayList();
+        parents.add(doc);
+        while (!parents.isEmpty()) {
+            Node parent = (Node) parents.remove(parents.size() - 1);
+            Text previousText = null;
+            Node child = parent.getFirstChild();
+            while (child != null) {
+                Node next = child.getNextSibling();
+                switch (child.getNodeType()) {
+                case Node.COMMENT_NODE:
+                    if (stripComments) {
+                        parent.removeChild(child);
+                    } else {
+                        previousText = null;
+                    }
+                    break;
+                case Node.DOCUMENT_TYPE_NODE:
+                    if (stripComments) {
+                        parent.removeChild(child);
+                    }
+                    break;
+                case Node.ENTITY_REFERENCE_NODE:
+                    if (stripComments) {
+                        next = expand(parent, child);
+                    } else {
+                        previousText = null;
+                    }
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    if (stripComments) {
+                        Text text = child.getOwnerDocument()
+                            .createTextNode(child.getNodeValue());
+                        parent.replaceChild(text, child);
+                        previousText = manipulateText(parent, text,
+                                                      previousText, false);
+                    } else {
+                        previousText = null;
+                    }
+                    break;
+                case Node.TEXT_NODE:
+                    previousText = manipulateText(parent, (Text) child,
+                                                  previousText,
+                                                  stripWhitespace);
+                    break;
+                case Node.ELEMENT_NODE:
+                    if (stripComments) {
+                        specifyAttributes(child.getAttributes());
+                    }
+                    parents.add(child);
+                    previousText = null;
+                    break;
+                default:
+                    previousText = null;
+                    break;
+                }
+                child = next;
+            }
+        }
+    }
+
+    /**
+     * Removes, merges or keeps a Text node.
+     * @param stripIfWhitespace whether the node is to be removed if
+     * it only consists of whitespace
+     * @return the Text node following Text nodes are merged into
+     */
+    private Text manipulateText(Node parent, Text text, Text previousText,
+                                boolean stripIfWhitespace) {
+        String value = text.getData();
+        if (stripIfWhitespace && value.trim().length() == 0
+            || mergeText && value.length() == 0) {
+            parent.removeChild(text);
+            return previousText;
+        }
+        if (!mergeText) {
+            return null;
+        }
+        if (previousText != null) {
+            previousText.appendData(value);
+            parent.removeChild(text);
+            return previousText;
+        }
+        return text;
+    }
+
+    /**
+     * Replaces an EntityReference by copies of its children.
+     * @return the first of the inserted nodes
+     */
+    private static Node expand(Node parent, Node entityReference) {
+        Node first = null;
+        for (Node c = entityReference.getFirstChild(); c != null;
+             c = c.getNextSibling()) {
+            Node copy = c.cloneNode(true);
+            parent.insertBefore(copy, entityReference);
+            if (first == null) {
+                first = copy;
+            }
+        }
+        Node next = entityReference.getNextSibling();
+        parent.removeChild(entityReference);
+        return first != null ? first : next;
+    }
+
+    private static boolean hasUnspecifiedAttributes(NamedNodeMap attributes) {
+        int length = attributes.getLength();
+        for (int i = 0; i < length; i++) {
+            if (!((Attr) attributes.item(i)).getSpecified()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void specifyAttributes(NamedNodeMap attributes) {
+        int length = attributes.getLength();
+        for (int i = 0; i < length; i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (!attr.getSpecified()) {
+                attr.setValue(attr.getValue());
+            }
+        }
+    }
+}
@@ -153,6 +153,45 @@ public class ElementNameAndAttributeQualifier extends ElementNameQualifier {
         return true;
     }
 
+    /**
+     * The namespace URI and non-namespaced tag name of the element
+     * together with the values of the qualifying attributes.
+     *
+     * <p>No key is provided if the qualifier has been created to
+     * use all attributes (the control element decides which
+     * attributes are compared in this case), if any of the
+     * qualifying attributes is namespaced or if a subclass
+     * overrides {@link #qualifyForComparison qualifyForComparison}
+     * or {@link #areAttributesComparable areAttributesComparable}
+     * without overriding this method.</p>
+     * @param element
+     * @return a key that is equal for two elements if and only if
+     * they qualify for comparison, null if no key can be computed
+     */
+    public Object getMatchKey(Element element) {
+        if (getClass() != ElementNameAndAttributeQualifier.class
+            || matchesAllAttributes(qualifyingAttrNames)) {
+            return null;
+        }
+        Object[] key = new Object[qualifyingAttrNames.length + 1];
+        key[0] = getNameKey(element);
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < qualifyingAttrNames.length; ++i) {
+            Attr a = (Attr) attributes.getNamedItem(qualifyingAttrNames[i]);
+            if (a == null) {
+                // same as Element.getAttribute for missing attributes
+                key[i + 1] = "";
+            } else {
+                String nsURI = a.getNamespaceURI();
+                if (nsURI != null && nsURI.length() > 0) {
+                    return null;
+                }
+                key[i + 1] = a.getNodeValue();
+            }
+        }
+        return Arrays.asList(key);
+    }
+
     private static boolean matchesAllAttributes(String[] attributes) {
         return Arrays.equals(attributes, ALL_ATTRIBUTES);
     }
@@ -36,6 +36,7 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.custommonkey.xmlunit;
 
+import java.util.Arrays;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -66,6 +67,29 @@ public class ElementNameAndTextQualifier extends ElementNameQualifier {
         return false; 
     }
         
+    /**
+     * The namespace URI and non-namespaced tag name of the element
+     * together with its normalized text.
+     *
+     * <p>Subclasses that override {@link #qualifyForComparison
+     * qualifyForComparison}, {@link #similar similar} or {@link
+     * #extractText extractText} don't provide any key unless they
+     * override this method as well.</p>
+     * @param element
+     * @return a key that is equal for two elements if and only if
+     * they qualify for comparison, null if no key can be computed
+     */
+    public Object getMatchKey(Element element) {
+        if (getClass() != ElementNameAndTextQualifier.class) {
+            return null;
+        }
+        Text text = extractText(element);
+        return Arrays.asList(new Object[] {
+                getNameKey(element),
+                text == null ? null : text.getNodeValue()
+            });
+    }
+
     /**
      * Determine whether the text nodes contain similar values
      * @param control
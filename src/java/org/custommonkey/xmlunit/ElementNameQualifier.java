@@ -48,7 +48,7 @@ import org.w3c.dom.Node;
  * @see DifferenceEngine#compareNodeList(NodeList, NodeList, int, DifferenceListener, ElementQualifier)
  * @see Diff#overrideElementQualifier(ElementQualifier)
  */
-public class ElementNameQualifier implements ElementQualifier {
+public class ElementNameQualifier implements KeyedElementQualifier {
     /**
      * Determine whether two elements qualify for further Difference comparison.
      * @param control
@@ -62,6 +62,33 @@ public class ElementNameQualifier implements ElementQualifier {
             && equalsNamespace(control, test)
             && getNonNamespacedNodeName(control).equals(getNonNamespacedNodeName(test));
     }
+    /**
+     * The namespace URI and non-namespaced tag name of the element.
+     *
+     * <p>Subclasses that override {@link #qualifyForComparison
+     * qualifyForComparison} don't provide any key unless they
+     * override this method as well.</p>
+     * @param element
+     * @return a key that is equal for two elements if and only if
+     * they qualify for comparison
+     */
+    public Object getMatchKey(Element element) {
+        return getClass() == ElementNameQualifier.class
+            ? getNameKey(element) : null;
+    }
+
+    /**
+     * Namespace URI and non-namespaced tag name of an element
+     * combined into a single String.
+     */
+    final String getNameKey(Element element) {
+        String ns = element.getNamespaceURI();
+        String name = getNonNamespacedNodeName(element);
+        // XML names can't contain a '{', so there is no risk of
+        // clashes between names without and with namespace
+        return ns == null ? name : "{" + ns + "}" + name;
+    }
+
     /**
      * Determine whether two nodes are defined by the same namespace URI 
      * @param control
@@ -0,0 +1,70 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import org.w3c.dom.Element;
+
+/**
+ * Optional extension of ElementQualifier for qualifiers that can
+ * describe the qualification of an element by a single key.
+ *
+ * <p>If a qualifier implements this interface the DifferenceEngine
+ * computes the key of each test element once and looks up the
+ * candidates for a control element by key instead of invoking
+ * {@link ElementQualifier#qualifyForComparison qualifyForComparison}
+ * for each pair of sibling elements.</p>
+ *
+ * <p>Implementations must make sure that two elements with non-null
+ * keys qualify for comparison if and only if their keys are
+ * <code>equals</code>.</p>
+ *
+ * <br />Examples and more at 
+ * <a href="http://xmlunit.sourceforge.net"/>xmlunit.sourceforge.net</a>
+ * @see DifferenceEngine#compareNodeList(java.util.List, java.util.List, int, DifferenceListener, ElementQualifier)
+ */
+public interface KeyedElementQualifier extends ElementQualifier {
+    /**
+     * Computes the key of an element.
+     * @param element an Element from the control or test XML
+     * @return the key identifying all elements the given element
+     * qualifies for comparison with, null if no key can be computed
+     * for this element - the DifferenceEngine will fall back to
+     * {@link ElementQualifier#qualifyForComparison
+     * qualifyForComparison} in that case
+     */
+    Object getMatchKey(Element element);
+}
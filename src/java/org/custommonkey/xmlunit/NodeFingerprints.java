@@ -0,0 +1,381 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Bottom-up structural hashes of all nodes of a DOM tree.
+ *
+ * <p>Used by DifferenceEngine to {@link
+ * XMLUnit#setSkipIdenticalSubtrees skip identical subtrees}.  The
+ * fingerprint of a node covers everything the DifferenceEngine
+ * would compare for it and its descendants, taking the current
+ * XMLUnit settings for comments, whitespace, attribute order and
+ * Text vs CDATA into account.  It deliberately covers a little more
+ * than that (like all namespace declarations) since unequal
+ * fingerprints only mean the subtrees get compared the normal
+ * way.</p>
+ *
+ * <p>Equal fingerprints are only a hint, two subtrees are only
+ * considered identical after everything that went into their
+ * fingerprints has been compared - so a hash collision can't hide a
+ * difference.</p>
+ *
+ * <p>Subtrees containing nodes that would have to be reported as
+ * {@link DifferenceListener#skippedComparison skipped} or
+ * xsi:type attributes - whose values depend on namespace
+ * declarations outside of the subtree - don't get a fingerprint at
+ * all.</p>
+ */
+final class NodeFingerprints {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long NULL_STRING = 0x9e3779b97f4a7c15L;
+
+    private final boolean ignoreComments;
+    private final boolean skipWhitespaceOnlyText;
+    private final boolean trimWhitespace;
+    private final boolean normalizeWhitespace;
+    private final boolean ignoreAttributeOrder;
+    private final boolean ignoreDiffBetweenTextAndCDATA;
+
+    private final Map/*<Node, Long>*/ fingerprints = new HashMap();
+
+    /**
+     * Computes the fingerprints of the given node and all its
+     * descendants.
+     * @param skipWhitespaceOnlyText whether whitespace-only Text
+     * nodes are skipped by DifferenceEngine
+     */
+    NodeFingerprints(Node root, ComparisonSettings settings,
+                     boolean skipWhitespaceOnlyText) {
+        ignoreComments = settings.getIgnoreComments();
+        this.skipWhitespaceOnlyText = skipWhitespaceOnlyText;
+        normalizeWhitespace = settings.getNormalizeWhitespace();
+        trimWhitespace = settings.getIgnoreWhitespace() || normalizeWhitespace;
+        ignoreAttributeOrder = settings.getIgnoreAttributeOrder();
+        ignoreDiffBetweenTextAndCDATA =
+            settings.getIgnoreDiffBetweenTextAndCDATA();
+        if (root != null) {
+            computeAll(root);
+        }
+    }
+
+    /**
+     * Whether the given nodes both have a fingerprint and the
+     * fingerprints are the same.
+     */
+    boolean sameFingerprint(Node node, NodeFingerprints other,
+                            Node otherNode) {
+        Object mine = fingerprints.get(node);
+        return mine != null && mine.equals(other.fingerprints.get(otherNode));
+    }
+
+    /**
+     * Whether the given nodes have the same fingerprint and their
+     * subtrees are in fact identical.
+     */
+    boolean identicalSubtrees(Node node, NodeFingerprints other,
+                              Node otherNode) {
+        return sameFingerprint(node, other, otherNode)
+            && equalSubtrees(node, otherNode);
+    }
+
+    /**
+     * Compares everything that goes into the fingerprints of the
+     * given nodes and their descendants.
+     *
+     * <p>Uses an explicit queue rather than recursion, so deep
+     * documents don't need a deep call stack.</p>
+     */
+    boolean equalSubtrees(Node control, Node test) {
+        LinkedList/*<Node>*/ pending = new LinkedList();
+        pending.add(control);
+        pending.add(test);
+        while (!pending.isEmpty()) {
+            Node c = (Node) pending.removeFirst();
+            Node t = (Node) pending.removeFirst();
+            if (!equalNodes(c, t)) {
+                return false;
+            }
+            Node cChild = nextCompared(c.getFirstChild());
+            Node tChild = nextCompared(t.getFirstChild());
+            while (cChild != null && tChild != null) {
+                pending.add(cChild);
+                pending.add(tChild);
+                cChild = nextCompared(cChild.getNextSibling());
+                tChild = nextCompared(tChild.getNextSibling());
+            }
+            if (cChild != null || tChild != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Post-order traversal using the DOM's own pointers, so deep
+     * documents don't need a deep call stack.
+     */
+    private void computeAll(Node root) {
+        Node current = root;
+        while (true) {
+            while (current.getFirstChild() != null) {
+                current = current.getFirstChild();
+            }
+            while (true) {
+                computeFingerprint(current);
+                if (current == root) {
+                    return;
+                }
+                Node next = current.getNextSibling();
+                if (next != null) {
+                    current = next;
+                    break;
+                }
+                current = current.getParentNode();
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprint of a node whose children's
+     * fingerprints are already known.
+     */
+    private void computeFingerprint(Node n) {
+        long h = FNV_OFFSET_BASIS;
+        short type = n.getNodeType();
+        switch (type) {
+        case Node.ELEMENT_NODE:
+            h = mix(h, type);
+            h = mix(h, n.getNamespaceURI());
+            h = mix(h, n.getPrefix());
+            h = mix(h, n.getLocalName());
+            h = mix(h, n.getNodeName());
+            NamedNodeMap attributes = n.getAttributes();
+            int length = attributes.getLength();
+            h = mix(h, length);
+            long unorderedAttributes = 0;
+            for (int i = 0; i < length; i++) {
+                Attr a = (Attr) attributes.item(i);
+                if (isXMLSchemaTypeAttribute(a)) {
+                    return;
+                }
+                long attrHash = attributeFingerprint(a);
+                if (ignoreAttributeOrder) {
+                    unorderedAttributes += attrHash;
+                } else {
+                    h = mix(h, attrHash);
+                }
+            }
+            h = mix(h, unorderedAttributes);
+            break;
+        case Node.CDATA_SECTION_NODE:
+        case Node.TEXT_NODE:
+            h = mix(h, ignoreDiffBetweenTextAndCDATA ? Node.TEXT_NODE : type);
+            h = mix(h, n.getNamespaceURI());
+            h = mix(h, n.getPrefix());
+            h = mix(h, normalize(n.getNodeValue()));
+            break;
+        case Node.COMMENT_NODE:
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            h = mix(h, type);
+            h = mix(h, n.getNamespaceURI());
+            h = mix(h, n.getPrefix());
+            h = mix(h, n.getNodeName());
+            h = mix(h, normalize(n.getNodeValue()));
+            break;
+        default:
+            // DifferenceEngine doesn't compare the node at all, so
+            // neither the node nor any of its ancestors may be skipped
+            return;
+        }
+
+        int children = 0;
+        for (Node child = nextCompared(n.getFirstChild()); child != null;
+             child = nextCompared(child.getNextSibling())) {
+            Long childFingerprint = (Long) fingerprints.get(child);
+            if (childFingerprint == null) {
+                return;
+            }
+            h = mix(h, childFingerprint.longValue());
+            children++;
+        }
+        h = mix(h, children);
+        fingerprints.put(n, new Long(h));
+    }
+
+    /**
+     * The given node or its first following sibling that is not
+     * skipped by DifferenceEngine.
+     */
+    private Node nextCompared(Node n) {
+        while (n != null
+               && (ignoreComments && n.getNodeType() == Node.COMMENT_NODE
+                   || skipWhitespaceOnlyText
+                   && DocumentManipulator.isWhitespaceOnlyText(n))) {
+            n = n.getNextSibling();
+        }
+        return n;
+    }
+
+    /**
+     * Compares what goes into the fingerprints of the given nodes
+     * themselves.
+     */
+    private boolean equalNodes(Node c, Node t) {
+        if (comparedType(c) != comparedType(t)
+            || !equal(c.getNamespaceURI(), t.getNamespaceURI())
+            || !equal(c.getPrefix(), t.getPrefix())) {
+            return false;
+        }
+        switch (c.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            return equal(c.getLocalName(), t.getLocalName())
+                && equal(c.getNodeName(), t.getNodeName())
+                && equalAttributes(c.getAttributes(), t.getAttributes());
+        case Node.CDATA_SECTION_NODE:
+        case Node.TEXT_NODE:
+            return equal(normalize(c.getNodeValue()),
+                         normalize(t.getNodeValue()));
+        case Node.COMMENT_NODE:
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            return equal(c.getNodeName(), t.getNodeName())
+                && equal(normalize(c.getNodeValue()),
+                         normalize(t.getNodeValue()));
+        default:
+            return false;
+        }
+    }
+
+    private short comparedType(Node n) {
+        short type = n.getNodeType();
+        return ignoreDiffBetweenTextAndCDATA
+            && type == Node.CDATA_SECTION_NODE ? Node.TEXT_NODE : type;
+    }
+
+    private boolean equalAttributes(NamedNodeMap c, NamedNodeMap t) {
+        int length = c.getLength();
+        if (length != t.getLength()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            Attr a = (Attr) c.item(i);
+            if (ignoreAttributeOrder) {
+                boolean found = false;
+                for (int j = 0; !found && j < length; j++) {
+                    found = equalAttributes(a, (Attr) t.item(j));
+                }
+                if (!found) {
+                    return false;
+                }
+            } else if (!equalAttributes(a, (Attr) t.item(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalAttributes(Attr a, Attr b) {
+        return equal(a.getNamespaceURI(), b.getNamespaceURI())
+            && equal(a.getPrefix(), b.getPrefix())
+            && equal(a.getLocalName(), b.getLocalName())
+            && equal(a.getName(), b.getName())
+            && equal(normalize(a.getValue()), normalize(b.getValue()))
+            && a.getSpecified() == b.getSpecified();
+    }
+
+    private static boolean equal(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    private long attributeFingerprint(Attr a) {
+        long h = FNV_OFFSET_BASIS;
+        h = mix(h, a.getNamespaceURI());
+        h = mix(h, a.getPrefix());
+        h = mix(h, a.getLocalName());
+        h = mix(h, a.getName());
+        h = mix(h, normalize(a.getValue()));
+        return mix(h, a.getSpecified() ? 1 : 0);
+    }
+
+    /**
+     * Applies the same whitespace handling DifferenceEngine uses
+     * when comparing Strings.
+     */
+    private String normalize(String s) {
+        if (s == null || !trimWhitespace) {
+            return s;
+        }
+        s = s.trim();
+        return normalizeWhitespace ? DifferenceEngine.normalizeWhitespace(s)
+            : s;
+    }
+
+    private static boolean isXMLSchemaTypeAttribute(Attr attr) {
+        return XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI
+            .equals(attr.getNamespaceURI())
+            && XMLConstants.W3C_XML_SCHEMA_INSTANCE_TYPE_ATTR
+            .equals(attr.getLocalName());
+    }
+
+    private static long mix(long h, long value) {
+        h ^= value;
+        h *= FNV_PRIME;
+        return h ^ (h >>> 31);
+    }
+
+    private static long mix(long h, String s) {
+        if (s == null) {
+            return mix(h, NULL_STRING);
+        }
+        int length = s.length();
+        h = mix(h, length);
+        for (int i = 0; i < length; i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+}
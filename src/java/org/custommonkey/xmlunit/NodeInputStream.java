@@ -50,8 +50,10 @@ import org.w3c.dom.Node;
  */
 public class NodeInputStream extends InputStream {
     private final Node rootNode;
-    private final ByteArrayOutputStream nodeContentBytes;
     private final Properties outputProperties;
+    /** the serialized node, only the first contentLength bytes are used */
+    private byte[] content;
+    private int contentLength;
     private int atPos = 0;
 
     /**
@@ -68,18 +70,20 @@ public class NodeInputStream extends InputStream {
      */
     public NodeInputStream(Node rootNode, Properties outputProperties) {
         this.rootNode = rootNode;
-        nodeContentBytes = new ByteArrayOutputStream();
         this.outputProperties = outputProperties;
     }
 
     /**
-     * Do the actual work of serializing the node to bytes
+     * Do the actual work of serializing the node to bytes - only
+     * once, the bytes are read straight from the serializer's buffer.
      * @throws IOException if serialization goes awry
      */
     private void ensureContentAvailable() throws IOException {
-        if (nodeContentBytes.size() > 0) {
+        if (content != null) {
             return;
         }
+        ExposedByteArrayOutputStream nodeContentBytes =
+            new ExposedByteArrayOutputStream();
         try {
             Transform serializeTransform = new Transform(rootNode);
             if (outputProperties!=null) {
@@ -91,6 +95,8 @@ public class NodeInputStream extends InputStream {
             throw new IOException("Unable to serialize document to outputstream: "
                                   + e.toString());
         }
+        content = nodeContentBytes.getBuffer();
+        contentLength = nodeContentBytes.size();
     }
 
     /**
@@ -103,9 +109,44 @@ public class NodeInputStream extends InputStream {
         if (reallyAvailable()==0) {
             return -1;
         }
-        int contentByte = nodeContentBytes.toByteArray()[atPos];
-        atPos++;
-        return contentByte;
+        return content[atPos++] & 0xFF;
+    }
+
+    /**
+     * InputStream method
+     * @return number of bytes read
+     * @throws IOException
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureContentAvailable();
+        if (len == 0) {
+            return 0;
+        }
+        int count = Math.min(len, reallyAvailable());
+        if (count == 0) {
+            return -1;
+        }
+        System.arraycopy(content, atPos, b, off, count);
+        atPos += count;
+        return count;
+    }
+
+    /**
+     * InputStream method
+     * @return number of bytes skipped
+     * @throws IOException
+     */
+    public long skip(long n) throws IOException {
+        ensureContentAvailable();
+        if (n <= 0) {
+            return 0;
+        }
+        int count = (int) Math.min(n, reallyAvailable());
+        atPos += count;
+        return count;
     }
 
     /**
@@ -130,6 +171,19 @@ public class NodeInputStream extends InputStream {
      * @return really available
      */
     private int reallyAvailable() {
-        return nodeContentBytes.size() - atPos;
+        return contentLength - atPos;
+    }
+
+    /**
+     * Provides access to the buffer without copying it.
+     */
+    private static class ExposedByteArrayOutputStream
+        extends ByteArrayOutputStream {
+        private ExposedByteArrayOutputStream() {
+            super(8192);
+        }
+        private byte[] getBuffer() {
+            return buf;
+        }
     }
 }
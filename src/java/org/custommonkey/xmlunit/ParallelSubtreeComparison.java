@@ -0,0 +1,273 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compares a sequence of independent subtrees using a number of
+ * worker threads.
+ *
+ * <p>The workers don't talk to the real DifferenceListener, they
+ * record everything they'd tell it so the differences can be
+ * replayed in document order by the thread that started the
+ * comparison.  Workers only ever run a limited number of subtrees
+ * ahead of the replay, so the recorded events don't pile up.</p>
+ *
+ * <p>Doubles as the ComparisonController of the workers, halting
+ * them once the comparison has been cancelled.</p>
+ */
+final class ParallelSubtreeComparison implements ComparisonController {
+    /** how many subtrees per thread may be compared ahead of the replay */
+    private static final int SUBTREES_AHEAD_PER_THREAD = 4;
+
+    private final Subtree[] subtrees;
+    private final Thread[] workers;
+    private final int maxAhead;
+    private final Object lock = new Object();
+    /** next subtree a worker is going to pick up */
+    private int nextSubtree = 0;
+    /** number of subtrees that have been handed out to the replay */
+    private int replayed = 0;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param subtrees the subtrees to compare in the order their
+     * results are going to be requested
+     * @param threads number of worker threads to use
+     */
+    ParallelSubtreeComparison(List/*<Subtree>*/ subtrees, int threads) {
+        this.subtrees =
+            (Subtree[]) subtrees.toArray(new Subtree[subtrees.size()]);
+        int numWorkers = Math.min(threads, this.subtrees.length);
+        workers = new Thread[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new Thread(new Worker(),
+                                    "XMLUnit comparison worker " + i);
+            workers[i].setDaemon(true);
+        }
+        maxAhead = SUBTREES_AHEAD_PER_THREAD * numWorkers;
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    void start() {
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Waits for the given subtree to be compared and returns the
+     * recorded events - Difference instances or two element arrays
+     * of nodes whose comparison has been skipped.
+     *
+     * <p>Subtrees must be requested in the order they've been passed
+     * to the constructor.</p>
+     */
+    List/*<Object>*/ awaitEvents(Subtree subtree) {
+        boolean interrupted = false;
+        synchronized (lock) {
+            while (!subtree.done) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            ++replayed;
+            lock.notifyAll();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (subtree.failure instanceof RuntimeException) {
+            throw (RuntimeException) subtree.failure;
+        } else if (subtree.failure instanceof Error) {
+            throw (Error) subtree.failure;
+        } else if (subtree.failure != null) {
+            throw new XMLUnitRuntimeException("failed to compare subtree",
+                                              subtree.failure);
+        }
+        List events = subtree.events;
+        subtree.events = null;
+        return events;
+    }
+
+    /**
+     * Stops all workers as soon as possible and waits for them to
+     * finish.
+     */
+    void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        for (int i = 0; i < workers.length; i++) {
+            while (workers[i].isAlive()) {
+                try {
+                    workers[i].join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Halts the workers once the comparison has been cancelled.
+     */
+    public boolean haltComparison(Difference afterDifference) {
+        return cancelled;
+    }
+
+    /**
+     * Touches all parts of the given subtree that a comparison is
+     * going to read.
+     *
+     * <p>Some DOM implementations (like Xerces) lazily expand the
+     * tree or allocate caches from a document wide pool when a node
+     * is accessed for the first time, this is not safe when done by
+     * several threads at the same time.</p>
+     */
+    static void prepareForConcurrentReads(Node root) {
+        Node current = root;
+        while (current != null) {
+            current.getNodeName();
+            current.getNodeValue();
+            current.getNamespaceURI();
+            NamedNodeMap attributes = current.getAttributes();
+            if (attributes != null) {
+                int length = attributes.getLength();
+                for (int i = 0; i < length; i++) {
+                    Node attribute = attributes.item(i);
+                    attribute.getNamespaceURI();
+                    attribute.getNodeValue();
+                }
+            }
+            NodeList children = current.getChildNodes();
+            if (children.getLength() > 0) {
+                current = children.item(0);
+                continue;
+            }
+            while (current != root && current.getNextSibling() == null) {
+                current = current.getParentNode();
+            }
+            current = current == root ? null : current.getNextSibling();
+        }
+    }
+
+    /**
+     * A subtree to be compared by a worker.
+     */
+    abstract static class Subtree {
+        private List events = new ArrayList();
+        private Throwable failure;
+        private boolean done = false;
+
+        /**
+         * Compares the subtree, reporting to the given listener and
+         * stopping as soon as the comparison has been cancelled.
+         */
+        abstract void compare(DifferenceListener listener,
+                              ParallelSubtreeComparison comparison);
+    }
+
+    /**
+     * Records all events for later replay.
+     */
+    private static final class Recorder implements DifferenceListener {
+        private final List events;
+
+        private Recorder(List events) {
+            this.events = events;
+        }
+
+        public int differenceFound(Difference difference) {
+            events.add(difference);
+            return RETURN_ACCEPT_DIFFERENCE;
+        }
+
+        public void skippedComparison(Node control, Node test) {
+            events.add(new Node[] {control, test});
+        }
+    }
+
+    private final class Worker implements Runnable {
+        public void run() {
+            while (true) {
+                Subtree next;
+                synchronized (lock) {
+                    while (!cancelled && nextSubtree < subtrees.length
+                           && nextSubtree >= replayed + maxAhead) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException ex) {
+                            // nobody but cancel() is supposed to
+                            // stop us
+                        }
+                    }
+                    if (cancelled || nextSubtree >= subtrees.length) {
+                        return;
+                    }
+                    next = subtrees[nextSubtree++];
+                }
+                try {
+                    next.compare(new Recorder(next.events),
+                                 ParallelSubtreeComparison.this);
+                } catch (Throwable t) {
+                    next.failure = t;
+                }
+                synchronized (lock) {
+                    next.done = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+}
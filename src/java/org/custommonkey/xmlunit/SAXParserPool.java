@@ -0,0 +1,233 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+
+/**
+ * Bounded pool of validating SAXParsers used by {@link Validator
+ * Validator}.
+ *
+ * <p>If the factory configured via {@link XMLUnit#getSAXParserFactory
+ * XMLUnit} is validating, parsers are created by it directly.
+ * Otherwise the pool creates a validating factory of its own once
+ * per configured factory - a new instance of the same class - and
+ * never modifies the configured one.  The following settings of the
+ * configured factory carry over to the pool's factory:</p>
+ *
+ * <ul>
+ *   <li>namespace awareness,</li>
+ *   <li>XInclude awareness and the Schema (JAXP 1.3),</li>
+ *   <li>the features listed in {@link #COPIED_FEATURES
+ *   COPIED_FEATURES} as far as the factory recognizes them.</li>
+ * </ul>
+ *
+ * <p>Any other feature has its default value, set the factory to
+ * validating yourself if your parser needs a different
+ * configuration.</p>
+ *
+ * <p>Parsers are {@link SAXParser#reset reset} before they are
+ * reused, parsers that don't support resetting or still use a W3C
+ * XML Schema after the reset are discarded.  The pool is emptied
+ * whenever a factory is configured via {@link
+ * XMLUnit#setSAXParserFactory XMLUnit}.  Other changes made to the
+ * configured factory are not detected.</p>
+ */
+final class SAXParserPool {
+    private final int maxIdle;
+    private final LinkedList/*<SAXParser>*/ idle = new LinkedList();
+    /** parsers handed out and the configured factory they stem from */
+    private final Map/*<SAXParser, SAXParserFactory>*/ leased =
+        new WeakHashMap();
+    private SAXParserFactory configuredFactory;
+    private SAXParserFactory validatingFactory;
+
+    /**
+     * Features of the configured factory that are copied to the
+     * pool's own validating factory.
+     */
+    static final String[] COPIED_FEATURES = {
+        "http://javax.xml.XMLConstants/feature/secure-processing",
+        "http://xml.org/sax/features/namespace-prefixes",
+        "http://xml.org/sax/features/external-general-entities",
+        "http://xml.org/sax/features/external-parameter-entities",
+        "http://apache.org/xml/features/disallow-doctype-decl",
+        "http://apache.org/xml/features/nonvalidating/load-external-dtd"
+    };
+
+    /**
+     * @param maxIdle maximum number of parsers kept for reuse
+     */
+    SAXParserPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Hands out an idle parser or creates a new one.
+     */
+    synchronized SAXParser acquire()
+        throws ParserConfigurationException, SAXException {
+        SAXParserFactory current = XMLUnit.getSAXParserFactory();
+        if (current != configuredFactory) {
+            idle.clear();
+            configuredFactory = current;
+            validatingFactory = null;
+        }
+        SAXParser parser = idle.isEmpty()
+            ? newParser() : (SAXParser) idle.removeFirst();
+        leased.put(parser, configuredFactory);
+        return parser;
+    }
+
+    /**
+     * Returns a parser obtained by {@link #acquire acquire} to the
+     * pool.
+     */
+    void release(SAXParser parser) {
+        try {
+            parser.reset();
+        } catch (UnsupportedOperationException e) {
+            forget(parser);
+            return;
+        } catch (NoSuchMethodError e) {
+            // JAXP before 1.3
+            forget(parser);
+            return;
+        }
+        boolean reusable = isReset(parser);
+        synchronized (this) {
+            Object origin = leased.remove(parser);
+            if (reusable && origin == configuredFactory
+                && idle.size() < maxIdle) {
+                idle.addFirst(parser);
+            }
+        }
+    }
+
+    /**
+     * Discards all idle parsers and the pool's validating factory.
+     */
+    synchronized void clear() {
+        idle.clear();
+        configuredFactory = null;
+        validatingFactory = null;
+    }
+
+    /**
+     * Number of parsers currently held for reuse.
+     */
+    synchronized int size() {
+        return idle.size();
+    }
+
+    /**
+     * Some implementations - the JDK's among them - keep the JAXP
+     * schema properties across a reset.
+     */
+    private static boolean isReset(SAXParser parser) {
+        return isUnset(parser, JAXPConstants.Properties.SCHEMA_LANGUAGE)
+            && isUnset(parser, JAXPConstants.Properties.SCHEMA_SOURCE);
+    }
+
+    private static boolean isUnset(SAXParser parser, String property) {
+        try {
+            return parser.getProperty(property) == null;
+        } catch (SAXNotRecognizedException e) {
+            return true;
+        } catch (SAXNotSupportedException e) {
+            return true;
+        }
+    }
+
+    private synchronized void forget(SAXParser parser) {
+        leased.remove(parser);
+    }
+
+    private SAXParser newParser()
+        throws ParserConfigurationException, SAXException {
+        if (validatingFactory == null) {
+            validatingFactory = newValidatingFactory(configuredFactory);
+        }
+        return validatingFactory.newSAXParser();
+    }
+
+    /**
+     * The given factory if it is validating, a validating copy of
+     * it otherwise.
+     */
+    private static SAXParserFactory newValidatingFactory(SAXParserFactory f)
+        throws ParserConfigurationException {
+        if (f.isValidating()) {
+            return f;
+        }
+        SAXParserFactory copy;
+        try {
+            copy = (SAXParserFactory) f.getClass().newInstance();
+        } catch (Exception e) {
+            // no accessible default constructor
+            copy = SAXParserFactory.newInstance();
+        }
+        copy.setNamespaceAware(f.isNamespaceAware());
+        copy.setValidating(true);
+        try {
+            copy.setXIncludeAware(f.isXIncludeAware());
+            copy.setSchema(f.getSchema());
+        } catch (UnsupportedOperationException e) {
+            // not supported by this factory
+        } catch (NoSuchMethodError e) {
+            // JAXP before 1.3
+        }
+        for (int i = 0; i < COPIED_FEATURES.length; i++) {
+            try {
+                copy.setFeature(COPIED_FEATURES[i],
+                                f.getFeature(COPIED_FEATURES[i]));
+            } catch (SAXException e) {
+                // not recognized or supported by one of the factories
+            }
+        }
+        return copy;
+    }
+}
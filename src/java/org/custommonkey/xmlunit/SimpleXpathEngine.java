@@ -39,18 +39,16 @@ package org.custommonkey.xmlunit;
 import org.custommonkey.xmlunit.exceptions.ConfigurationException;
 import org.custommonkey.xmlunit.exceptions.XpathException;
 
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Iterator;
 import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.Result;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -63,9 +61,34 @@ import org.w3c.dom.NodeList;
  * This is not an efficient method for accessing XPaths but it is portable
  * across underlying transform implementations. (Yes I know Jaxen is too, but
  * this approach seemed to be the simplest thing that could possibly work...)
+ * The compiled stylesheets are cached, keyed by their text - which
+ * contains the select expression, the namespace declarations and the
+ * XSLT version - so each expression is only compiled once.
  * <br />Examples and more at <a href="http://xmlunit.sourceforge.net"/>xmlunit.sourceforge.net</a>
  */
-public class SimpleXpathEngine implements XpathEngine, XSLTConstants {
+public class SimpleXpathEngine implements BatchXpathEngine, XSLTConstants {
+
+    private static final ErrorListener FATAL_ERRORS = new ErrorListener() {
+            public void error(TransformerException ex)
+                throws TransformerException {
+                // any error in our simple stylesheet must be fatal
+                throw ex;
+            }
+            public void fatalError(TransformerException ex)
+                throws TransformerException {
+                throw ex;
+            }
+            public void warning(TransformerException ex) {
+                // there shouldn't be any warning
+                ex.printStackTrace();
+            }
+        };
+
+    /**
+     * Compiled stylesheets shared by all instances.
+     */
+    static final TemplatesCache TEMPLATES =
+        new TemplatesCache(500, FATAL_ERRORS);
 
     private NamespaceContext ctx = SimpleNamespaceContext.EMPTY_CONTEXT;
 
@@ -120,6 +143,56 @@ public class SimpleXpathEngine implements XpathEngine, XSLTConstants {
             .toString();
     }
 
+    /**
+     * @param selects xpath syntax <code>select</code> expressions
+     * @return a transformation performing the <code>copy-of</code>
+     * transformation for each expression, each result wrapped in an
+     * element of its own
+     */
+    private String getCopyTransformation(String[] selects) {
+        StringBuffer xslt = getXSLTBase()
+            .append("<xsl:preserve-space elements=\"*\"/>")
+            .append("<xsl:output method=\"xml\" version=\"1.0\" encoding=\"UTF-8\"/>")
+            .append("<xsl:template match=\"/\">")
+            .append("<xpathResults>");
+        for (int i = 0; i < selects.length; i++) {
+            xslt.append("<xpathResult>")
+                .append("<xsl:apply-templates select=\"").append(selects[i])
+                .append("\" mode=\"result\"/>")
+                .append("</xpathResult>");
+        }
+        return xslt.append("</xpathResults>")
+            .append("</xsl:template>")
+            .append("<xsl:template match=\"*\" mode=\"result\">")
+            .append("  <xsl:copy-of select=\".\"/>")
+            .append("</xsl:template>")
+            .append("</xsl:stylesheet>")
+            .toString();
+    }
+
+    /**
+     * @param selects xpath syntax <code>select</code> expressions
+     * @return a transformation performing the <code>value-of</code>
+     * transformation for each expression, each result wrapped in an
+     * element of its own
+     */
+    private String getValueTransformation(String[] selects) {
+        StringBuffer xslt = getXSLTBase()
+            .append("<xsl:output method=\"xml\" version=\"1.0\" encoding=\"UTF-8\"/>")
+            .append("<xsl:template match=\"/\">")
+            .append("<xpathResults>");
+        for (int i = 0; i < selects.length; i++) {
+            xslt.append("<xpathResult>")
+                .append("<xsl:value-of select=\"").append(selects[i])
+                .append("\"/>")
+                .append("</xpathResult>");
+        }
+        return xslt.append("</xpathResults>")
+            .append("</xsl:template>")
+            .append("</xsl:stylesheet>")
+            .toString();
+    }
+
     /**
      * Perform the actual transformation work required
      * @param xslt
@@ -133,32 +206,19 @@ public class SimpleXpathEngine implements XpathEngine, XSLTConstants {
                                   Result result)
         throws TransformerException, ConfigurationException, XpathException {
         try {
-            StreamSource source = new StreamSource(new StringReader(xslt));
-            TransformerFactory tf = XMLUnit.newTransformerFactory();
-            ErrorListener el = new ErrorListener() {
-                    public void error(TransformerException ex)
-                        throws TransformerException {
-                        // any error in our simple stylesheet must be fatal
-                        throw ex;
-                    }
-                    public void fatalError(TransformerException ex)
-                        throws TransformerException {
-                        throw ex;
-                    }
-                    public void warning(TransformerException ex) {
-                        // there shouldn't be any warning
-                        ex.printStackTrace();
-                    }
-                };
-            tf.setErrorListener(el);
-            Transformer transformer = tf.newTransformer(source);
+            Templates templates = TEMPLATES.getTemplates(xslt);
             // Issue 1985229 says Xalan-J 2.7.0 may return null for
             // illegal input
+            Transformer transformer =
+                templates == null ? null : templates.newTransformer();
             if (transformer == null) {
                 throw new XpathException("failed to obtain an XSLT transformer"
                                          + " for XPath expression.");
             }
-            transformer.setErrorListener(el);
+            transformer.setErrorListener(FATAL_ERRORS);
+            if (XMLUnit.getURIResolver() != null) {
+                transformer.setURIResolver(XMLUnit.getURIResolver());
+            }
             transformer.transform(new DOMSource(document), result);
         } catch (javax.xml.transform.TransformerConfigurationException ex) {
             throw new ConfigurationException(ex);
@@ -232,6 +292,93 @@ public class SimpleXpathEngine implements XpathEngine, XSLTConstants {
         }
     }
 
+    /**
+     * Execute all specified xpath syntax <code>select</code>
+     * expressions on the specified document and return the lists of
+     * nodes that match.
+     *
+     * <p>Uses a single stylesheet, so the document is only
+     * transformed once.  If any of the expressions is invalid, the
+     * whole batch fails.</p>
+     * @param selects
+     * @param document
+     * @return one list of matching nodes per expression
+     */
+    public NodeList[] getMatchingNodes(String[] selects, Document document)
+        throws ConfigurationException, XpathException {
+        Node[] results = getXPathResultNodes(selects, document);
+        NodeList[] nodes = new NodeList[results.length];
+        for (int i = 0; i < results.length; i++) {
+            nodes[i] = results[i].getChildNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Evaluate the results of executing all specified xpath syntax
+     * <code>select</code> expressions on the specified document
+     *
+     * <p>Uses a single stylesheet, so the document is only
+     * transformed once.  If any of the expressions is invalid, the
+     * whole batch fails.</p>
+     * @param selects
+     * @param document
+     * @return one evaluated result per expression
+     */
+    public String[] evaluate(String[] selects, Document document)
+        throws ConfigurationException, XpathException {
+        String[] values = new String[selects.length];
+        if (selects.length == 0) {
+            return values;
+        }
+        Node[] results = transformBatch(getValueTransformation(selects),
+                                        document, selects.length);
+        for (int i = 0; i < results.length; i++) {
+            StringBuffer value = new StringBuffer();
+            for (Node n = results[i].getFirstChild(); n != null;
+                 n = n.getNextSibling()) {
+                value.append(n.getNodeValue());
+            }
+            values[i] = value.toString();
+        }
+        return values;
+    }
+
+    /**
+     * Execute the combined copy-of transform.
+     * @return the element holding the result of each expression
+     */
+    private Node[] getXPathResultNodes(String[] selects, Document document)
+        throws ConfigurationException, XpathException {
+        if (selects.length == 0) {
+            return new Node[0];
+        }
+        return transformBatch(getCopyTransformation(selects), document,
+                              selects.length);
+    }
+
+    /**
+     * Performs a batch transformation.
+     * @return the element holding the result of each expression
+     */
+    private Node[] transformBatch(String xslt, Document document,
+                                  int numberOfExpressions)
+        throws ConfigurationException, XpathException {
+        DOMResult result = new DOMResult();
+        try {
+            performTransform(xslt, document, result);
+        } catch (TransformerException ex) {
+            throw new XpathException("Failed to apply stylesheet", ex);
+        }
+        Node[] results = new Node[numberOfExpressions];
+        Node n = ((Document) result.getNode()).getDocumentElement()
+            .getFirstChild();
+        for (int i = 0; i < results.length; i++, n = n.getNextSibling()) {
+            results[i] = n;
+        }
+        return results;
+    }
+
     public void setNamespaceContext(NamespaceContext ctx) {
         this.ctx = ctx;
     }
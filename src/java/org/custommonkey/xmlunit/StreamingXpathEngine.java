@@ -0,0 +1,554 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.custommonkey.xmlunit.exceptions.XpathException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Evaluates a subset of XPath while parsing a document, without
+ * building a DOM.
+ *
+ * <p>Memory use only depends on the nesting depth of the document,
+ * not on its size, and parsing stops as soon as the result is known -
+ * for example at the first match when testing for existence.</p>
+ *
+ * <p>The supported subset consists of location paths made of
+ * <ul>
+ *   <li>child (<code>/</code>) and descendant (<code>//</code>)
+ *   steps starting at the document,</li>
+ *   <li>element name tests - <code>name</code>,
+ *   <code>prefix:name</code>, <code>*</code> or
+ *   <code>prefix:*</code> - where prefixes are resolved using the
+ *   {@link #setNamespaceContext namespace context},</li>
+ *   <li>any number of predicates testing attributes of the element,
+ *   like <code>[@id]</code> or <code>[@id='x']</code>,</li>
+ *   <li>an optional final attribute step like
+ *   <code>/@id</code>,</li>
+ * </ul>
+ * as well as <code>count(</code><em>path</em><code>)</code>.  An
+ * example would be <code>/feed//item[@type='book']/@id</code>.</p>
+ *
+ * <p>Any other expression is evaluated by the {@link
+ * XMLUnit#newXpathEngine DOM based XpathEngine} against a document
+ * built by {@link XMLUnit#buildControlDocument(InputSource)
+ * buildControlDocument} instead.</p>
+ *
+ * <p>Documents are parsed using a namespace aware, non-validating,
+ * SAX parser and the {@link XMLUnit#getControlEntityResolver control
+ * EntityResolver}.</p>
+ */
+public class StreamingXpathEngine {
+
+    private static SAXParserFactory factory;
+
+    private NamespaceContext ctx = SimpleNamespaceContext.EMPTY_CONTEXT;
+
+    /**
+     * Establish a namespace context.
+     */
+    public void setNamespaceContext(NamespaceContext ctx) {
+        this.ctx = ctx == null ? SimpleNamespaceContext.EMPTY_CONTEXT : ctx;
+    }
+
+    /**
+     * Whether the given expression belongs to the supported subset
+     * and can be evaluated without building a DOM.
+     */
+    public boolean canStream(String select) {
+        return parse(select) != null;
+    }
+
+    /**
+     * Evaluate the result of executing the specified xpath syntax
+     * <code>select</code> expression on the specified document.
+     * @param select
+     * @param source
+     * @return evaluated result - the string-value of the first
+     * matching node or the number of matching nodes for
+     * <code>count</code>
+     */
+    public String evaluate(String select, InputSource source)
+        throws XpathException, SAXException, IOException {
+        Expression expr = parse(select);
+        if (expr == null) {
+            return newXpathEngine()
+                .evaluate(select, XMLUnit.buildControlDocument(source));
+        }
+        Matcher m = new Matcher(expr.path,
+                                expr.count ? Matcher.COUNT : Matcher.VALUE);
+        parse(source, m);
+        return expr.count ? String.valueOf(m.count) : m.value.toString();
+    }
+
+    /**
+     * Whether executing the specified xpath syntax
+     * <code>select</code> expression on the specified document
+     * selects any node at all.
+     * @param select
+     * @param source
+     */
+    public boolean exists(String select, InputSource source)
+        throws XpathException, SAXException, IOException {
+        Expression expr = parse(select);
+        if (expr == null || expr.count) {
+            Document d = XMLUnit.buildControlDocument(source);
+            return newXpathEngine().getMatchingNodes(select, d)
+                .getLength() > 0;
+        }
+        Matcher m = new Matcher(expr.path, Matcher.EXISTS);
+        parse(source, m);
+        return m.count > 0;
+    }
+
+    private XpathEngine newXpathEngine() {
+        XpathEngine engine = XMLUnit.newXpathEngine();
+        engine.setNamespaceContext(ctx);
+        return engine;
+    }
+
+    private static void parse(InputSource source, Matcher m)
+        throws SAXException, IOException {
+        XMLReader reader;
+        try {
+            reader = newSAXParserFactory().newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException ex) {
+            throw new ConfigurationException(ex);
+        }
+        reader.setContentHandler(m);
+        reader.setErrorHandler(m);
+        if (XMLUnit.getControlEntityResolver() != null) {
+            reader.setEntityResolver(XMLUnit.getControlEntityResolver());
+        }
+        try {
+            reader.parse(source);
+        } catch (ResultKnown done) {
+            // stopped early
+        }
+    }
+
+    private static synchronized SAXParserFactory newSAXParserFactory() {
+        if (factory == null) {
+            factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+        }
+        return factory;
+    }
+
+    // ---------------------------------------------------------------
+    // parsing of expressions
+    // ---------------------------------------------------------------
+
+    /**
+     * Parses the expression, returns null if it is not supported.
+     */
+    private Expression parse(String select) {
+        if (select == null) {
+            return null;
+        }
+        String s = select.trim();
+        boolean count = false;
+        if (s.startsWith("count(") && s.endsWith(")")) {
+            count = true;
+            s = s.substring("count(".length(), s.length() - 1).trim();
+        }
+        try {
+            return new Expression(new ExpressionParser(s).parsePath(), count);
+        } catch (Unsupported ex) {
+            return null;
+        }
+    }
+
+    private static final class Expression {
+        private final Path path;
+        private final boolean count;
+        private Expression(Path path, boolean count) {
+            this.path = path;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A list of element steps and an optional final attribute.
+     */
+    private static final class Path {
+        private final Step[] steps;
+        /** null if the path selects elements */
+        private final Name attribute;
+        private Path(Step[] steps, Name attribute) {
+            this.steps = steps;
+            this.attribute = attribute;
+        }
+    }
+
+    private static final class Step {
+        private final boolean descendant;
+        private final Name name;
+        private final AttributeTest[] predicates;
+        private Step(boolean descendant, Name name,
+                     AttributeTest[] predicates) {
+            this.descendant = descendant;
+            this.name = name;
+            this.predicates = predicates;
+        }
+
+        private boolean matches(String uri, String localName,
+                                Attributes attributes) {
+            if (!name.matches(uri, localName)) {
+                return false;
+            }
+            for (int i = 0; i < predicates.length; i++) {
+                if (!predicates[i].matches(attributes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A name test, null local name means any.
+     */
+    private static final class Name {
+        private final String uri;
+        private final String localName;
+        private Name(String uri, String localName) {
+            this.uri = uri;
+            this.localName = localName;
+        }
+        private boolean matches(String uri, String localName) {
+            return this.uri.equals(uri == null ? "" : uri)
+                && (this.localName == null
+                    || this.localName.equals(localName));
+        }
+    }
+
+    private static final class AttributeTest {
+        private final Name name;
+        /** null if only the presence is tested */
+        private final String value;
+        private AttributeTest(Name name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+        private boolean matches(Attributes attributes) {
+            String actual = attributes.getValue(name.uri, name.localName);
+            return actual != null && (value == null || value.equals(actual));
+        }
+    }
+
+    /**
+     * Thrown by ExpressionParser if the expression is outside of the
+     * supported subset.
+     */
+    private static final class Unsupported extends Exception {
+    }
+
+    private final class ExpressionParser {
+        private final String s;
+        private int pos;
+
+        private ExpressionParser(String s) {
+            this.s = s;
+        }
+
+        private Path parsePath() throws Unsupported {
+            List/*<Step>*/ steps = new ArrayList();
+            Name attribute = null;
+            boolean descendant = false;
+            if (s.startsWith("//")) {
+                descendant = true;
+                pos = 2;
+            } else if (s.startsWith("/")) {
+                pos = 1;
+            }
+            while (true) {
+                if (peek() == '@') {
+                    pos++;
+                    attribute = parseName(false);
+                    if (descendant || attribute.localName == null) {
+                        throw new Unsupported();
+                    }
+                    break;
+                }
+                steps.add(new Step(descendant, parseName(true),
+                                   parsePredicates()));
+                if (s.startsWith("//", pos)) {
+                    descendant = true;
+                    pos += 2;
+                } else if (peek() == '/') {
+                    descendant = false;
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (pos != s.length() || steps.isEmpty()) {
+                throw new Unsupported();
+            }
+            return new Path((Step[]) steps.toArray(new Step[steps.size()]),
+                            attribute);
+        }
+
+        private AttributeTest[] parsePredicates() throws Unsupported {
+            List/*<AttributeTest>*/ tests = new ArrayList();
+            while (peek() == '[') {
+                pos++;
+                skipSpace();
+                if (peek() != '@') {
+                    throw new Unsupported();
+                }
+                pos++;
+                Name name = parseName(false);
+                if (name.localName == null) {
+                    throw new Unsupported();
+                }
+                skipSpace();
+                String value = null;
+                if (peek() == '=') {
+                    pos++;
+                    skipSpace();
+                    value = parseLiteral();
+                    skipSpace();
+                }
+                if (peek() != ']') {
+                    throw new Unsupported();
+                }
+                pos++;
+                tests.add(new AttributeTest(name, value));
+            }
+            return (AttributeTest[])
+                tests.toArray(new AttributeTest[tests.size()]);
+        }
+
+        private String parseLiteral() throws Unsupported {
+            char quote = peek();
+            if (quote != '\'' && quote != '"') {
+                throw new Unsupported();
+            }
+            int end = s.indexOf(quote, pos + 1);
+            if (end == -1) {
+                throw new Unsupported();
+            }
+            String value = s.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+
+        /**
+         * Parses a QName, NCName:* or * - the later two only for
+         * elements - and resolves the prefix.
+         */
+        private Name parseName(boolean element) throws Unsupported {
+            String prefix = null;
+            String localName;
+            if (element && peek() == '*') {
+                pos++;
+                localName = null;
+            } else {
+                localName = parseNCName();
+                if (peek() == ':') {
+                    pos++;
+                    prefix = localName;
+                    if (element && peek() == '*') {
+                        pos++;
+                        localName = null;
+                    } else {
+                        localName = parseNCName();
+                    }
+                }
+            }
+            String uri = "";
+            if (prefix != null) {
+                uri = ctx.getNamespaceURI(prefix);
+                if (uri == null || uri.length() == 0) {
+                    throw new Unsupported();
+                }
+            } else if (localName == null && !element) {
+                throw new Unsupported();
+            }
+            return new Name(uri, localName);
+        }
+
+        private String parseNCName() throws Unsupported {
+            int start = pos;
+            while (pos < s.length() && isNameChar(s.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos || !Character.isLetter(s.charAt(start))
+                && s.charAt(start) != '_') {
+                throw new Unsupported();
+            }
+            return s.substring(start, pos);
+        }
+
+        private boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '.' || c == '-'
+                || c == '_';
+        }
+
+        private char peek() {
+            return pos < s.length() ? s.charAt(pos) : 0;
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // evaluation
+    // ---------------------------------------------------------------
+
+    /**
+     * Thrown to stop parsing once the result is known.
+     */
+    private static final class ResultKnown extends SAXException {
+        private ResultKnown() {
+            super("result known");
+        }
+    }
+
+    /**
+     * Tracks which steps of the path the currently open elements
+     * have matched.
+     *
+     * <p>For each open element it keeps the set of step indices that
+     * may be applied to its children: <code>i+1</code> if the element
+     * matched step <code>i</code> and any <code>i</code> of a
+     * descendant step that is still looking for a match further
+     * down.  The element matches the whole path if the set contains
+     * the number of steps.</p>
+     */
+    private static final class Matcher extends DefaultHandler {
+        private static final int EXISTS = 0;
+        private static final int COUNT = 1;
+        private static final int VALUE = 2;
+
+        private final Path path;
+        private final int mode;
+        private final boolean ignoreWhitespace =
+            XMLUnit.getIgnoreWhitespace();
+        private final List/*<boolean[]>*/ states = new ArrayList();
+        private int count;
+        private final StringBuffer value = new StringBuffer();
+        /** depth of the element whose text is collected, -1 if none */
+        private int collectingDepth = -1;
+
+        private Matcher(Path path, int mode) {
+            this.path = path;
+            this.mode = mode;
+            boolean[] initial = new boolean[path.steps.length + 1];
+            initial[0] = true;
+            states.add(initial);
+        }
+
+        public void startElement(String uri, String localName,
+                                 String qName, Attributes attributes)
+            throws SAXException {
+            Step[] steps = path.steps;
+            boolean[] parent = (boolean[]) states.get(states.size() - 1);
+            boolean[] current = new boolean[steps.length + 1];
+            for (int i = 0; i < steps.length; i++) {
+                if (parent[i]) {
+                    if (steps[i].descendant) {
+                        current[i] = true;
+                    }
+                    if (steps[i].matches(uri, localName, attributes)) {
+                        current[i + 1] = true;
+                    }
+                }
+            }
+            states.add(current);
+            if (current[steps.length] && collectingDepth == -1) {
+                matched(attributes);
+            }
+        }
+
+        private void matched(Attributes attributes) throws SAXException {
+            if (path.attribute != null) {
+                String attr = attributes.getValue(path.attribute.uri,
+                                                  path.attribute.localName);
+                if (attr == null) {
+                    return;
+                }
+                value.append(attr);
+            }
+            count++;
+            if (mode == EXISTS || mode == VALUE && path.attribute != null) {
+                throw new ResultKnown();
+            }
+            if (mode == VALUE) {
+                collectingDepth = states.size();
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+            if (collectingDepth == states.size()) {
+                throw new ResultKnown();
+            }
+            states.remove(states.size() - 1);
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            if (collectingDepth != -1) {
+                value.append(ch, start, length);
+            }
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            if (!ignoreWhitespace) {
+                characters(ch, start, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Bounded cache of compiled stylesheets, the least recently used
+ * stylesheet is evicted once the cache is full.
+ *
+ * <p>Stylesheets are compiled by {@link XMLUnit#getTransformerFactory
+ * XMLUnit's factory} or - if the cache needs a special ErrorListener -
+ * by a single TransformerFactory owned by the cache.  All cached
+ * stylesheets are dropped whenever XMLUnit's factory changes, i.e.
+ * after {@link XMLUnit#setTransformerFactory setTransformerFactory} or
+ * {@link XMLUnit#setURIResolver setURIResolver} have been called.</p>
+ *
+ * <p>All methods are thread-safe.</p>
+ */
+final class TemplatesCache {
+
+    private final ErrorListener errorListener;
+    private final Map/*<Object, Templates>*/ templates;
+    /** XMLUnit's factory at the time the cache was last filled */
+    private TransformerFactory configuredFactory;
+    /** the factory used to compile stylesheets */
+    private TransformerFactory factory;
+
+    /**
+     * @param maxSize maximum number of stylesheets held
+     * @param errorListener ErrorListener used while compiling
+     * stylesheets, XMLUnit's factory is used as is if null
+     */
+    TemplatesCache(final int maxSize, ErrorListener errorListener) {
+        this.errorListener = errorListener;
+        templates = new LinkedHashMap(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                    return size() > maxSize;
+                }
+            };
+    }
+
+    /**
+     * Returns the compiled version of the given stylesheet,
+     * compiling it if necessary.
+     * @return the compiled stylesheet, may be null if the
+     * TransformerFactory returned null
+     */
+    Templates getTemplates(String xslt)
+        throws TransformerConfigurationException {
+        return getTemplates(xslt, new StreamSource(new StringReader(xslt)));
+    }
+
+    /**
+     * Returns the compiled version of the given stylesheet,
+     * compiling it if necessary.
+     * @param key uniquely identifies the stylesheet
+     * @param stylesheet the stylesheet to compile if there is no
+     * cached version for the key
+     * @return the compiled stylesheet, may be null if the
+     * TransformerFactory returned null
+     */
+    synchronized Templates getTemplates(Object key, Source stylesheet)
+        throws TransformerConfigurationException {
+        TransformerFactory current = XMLUnit.getTransformerFactory();
+        if (current != configuredFactory) {
+            templates.clear();
+            configuredFactory = current;
+            if (errorListener != null) {
+                factory = XMLUnit.newTransformerFactory();
+                factory.setErrorListener(errorListener);
+            } else {
+                factory = current;
+            }
+        }
+        Templates t = (Templates) templates.get(key);
+        if (t == null) {
+            t = factory.newTemplates(stylesheet);
+            // Issue 1985229 says Xalan-J 2.7.0 may return null for
+            // illegal input
+            if (t != null) {
+                templates.put(key, t);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Number of stylesheets currently held.
+     */
+    synchronized int size() {
+        return templates.size();
+    }
+
+    /**
+     * Discards all compiled stylesheets.
+     */
+    synchronized void clear() {
+        templates.clear();
+    }
+}
@@ -43,11 +43,14 @@ import java.io.File;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.util.Arrays;
 import java.util.Properties;
 
 import javax.xml.transform.ErrorListener;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -64,12 +67,26 @@ import org.w3c.dom.Node;
 /**
  * Handy wrapper for an XSLT transformation performed using JAXP/Trax.
  * Note that transformation is not actually performed until a call to
- * <code>getResultXXX</code> method, and Templates are not used.
+ * <code>getResultXXX</code> method.
+ * <br />Stylesheets given as String or File - or as Source that only
+ * consists of a system ID - are compiled once and the compiled
+ * Templates are shared by all instances using the same stylesheet.
+ * Stylesheet files - including those given as <code>file:</code>
+ * system ID - are compiled again if they have been modified.
+ * Modifications of stylesheets pulled in via
+ * <code>xsl:include</code> or <code>xsl:import</code> are never
+ * detected.
+ * Alternatively a precompiled Templates instance can be passed in.
  * <br />Examples and more at <a href="http://xmlunit.sourceforge.net"/>xmlunit.sourceforge.net</a>
  */
 public class Transform {
     private static final File PWD = new File(".");
 
+    /**
+     * Compiled stylesheets shared by all instances.
+     */
+    static final TemplatesCache TEMPLATES = new TemplatesCache(100, null);
+
     private final Source inputSource;
     private final Transformer transformer;
 
@@ -80,7 +97,8 @@ public class Transform {
      */
     public Transform(String input, String stylesheet) {
         this(new StreamSource(new StringReader(input)),
-             new StreamSource(new StringReader(stylesheet)));
+             new StreamSource(new StringReader(stylesheet)),
+             getCacheKey(stylesheet));
     }
 
     /**
@@ -90,7 +108,17 @@ public class Transform {
      */
     public Transform(String input, File stylesheet) {
         this(new StreamSource(new StringReader(input)),
-             new StreamSource(stylesheet));
+             new StreamSource(stylesheet), getCacheKey(stylesheet));
+    }
+
+    /**
+     * Create a transformation using String input XML and a compiled
+     * stylesheet
+     * @param input
+     * @param stylesheet
+     */
+    public Transform(String input, Templates stylesheet) {
+        this(new StreamSource(new StringReader(input)), stylesheet);
     }
 
     /**
@@ -110,7 +138,8 @@ public class Transform {
      * @param stylesheet
      */
     public Transform(InputSource input, File stylesheet) {
-        this(new SAXSource(input), new StreamSource(stylesheet));
+        this(new SAXSource(input), new StreamSource(stylesheet),
+             getCacheKey(stylesheet));
     }
 
     /**
@@ -118,7 +147,7 @@ public class Transform {
      * @param source
      */
     public Transform(Node sourceNode) {
-        this(sourceNode, (Source)null);
+        this(sourceNode, (Source)null, null);
     }
 
     /**
@@ -127,7 +156,8 @@ public class Transform {
      * @param stylesheet
      */
     public Transform(Node sourceNode, String stylesheet) {
-        this(sourceNode, new StreamSource(new StringReader(stylesheet)));
+        this(sourceNode, new StreamSource(new StringReader(stylesheet)),
+             getCacheKey(stylesheet));
     }
 
     /**
@@ -136,16 +166,30 @@ public class Transform {
      * @param stylesheet
      */
     public Transform(Node sourceNode, File stylesheet) {
-        this(sourceNode, new StreamSource(stylesheet));
+        this(sourceNode, new StreamSource(stylesheet),
+             getCacheKey(stylesheet));
+    }
+
+    /**
+     * Create a transformation from an input Node and a compiled
+     * stylesheet
+     * @param sourceNode
+     * @param stylesheet
+     */
+    public Transform(Node sourceNode, Templates stylesheet) {
+        this(new DOMSource(sourceNode), stylesheet);
     }
 
     /**
      * Create a transformation from an input Node and stylesheet in a Source
      * @param sourceNode
      * @param stylesheetSource
+     * @param cacheKey identifies the compiled stylesheet in the
+     * cache, null if it must not be cached
      */
-    private Transform(Node sourceNode, Source stylesheetSource) {
-        this(new DOMSource(sourceNode), stylesheetSource);
+    private Transform(Node sourceNode, Source stylesheetSource,
+                      Object cacheKey) {
+        this(new DOMSource(sourceNode), stylesheetSource, cacheKey);
     }
 
     /**
@@ -154,18 +198,58 @@ public class Transform {
      * @param stylesheetReader
      */
     public Transform(Source inputSource, Source stylesheetSource) {
+        this(inputSource, stylesheetSource, getCacheKey(stylesheetSource));
+    }
+
+    /**
+     * Create a transformation using Source input XML and Source stylesheet
+     * @param inputSource
+     * @param stylesheetSource
+     * @param cacheKey identifies the compiled stylesheet in the
+     * cache, null if it must not be cached
+     */
+    private Transform(Source inputSource, Source stylesheetSource,
+                      Object cacheKey) {
         this.inputSource = inputSource;
         provideSystemIdIfRequired(inputSource);
 
         provideSystemIdIfRequired(stylesheetSource);
-        this.transformer = getTransformer(stylesheetSource);
+        this.transformer = getTransformer(stylesheetSource, cacheKey);
+    }
+
+    /**
+     * Create a transformation using Source input XML and a Transformer
+     * that may be shared with other instances used by the same thread
+     * @param inputSource
+     * @param transformer
+     */
+    Transform(Source inputSource, Transformer transformer) {
+        this.inputSource = inputSource;
+        provideSystemIdIfRequired(inputSource);
+        this.transformer = transformer;
+    }
+
+    /**
+     * Create a transformation using Source input XML and a compiled
+     * stylesheet
+     * @param inputSource
+     * @param stylesheet
+     */
+    public Transform(Source inputSource, Templates stylesheet) {
+        this.inputSource = inputSource;
+        provideSystemIdIfRequired(inputSource);
+        try {
+            this.transformer = newTransformer(stylesheet);
+        } catch (javax.xml.transform.TransformerConfigurationException ex) {
+            throw new ConfigurationException(ex);
+        }
     }
 
     /**
      * Ensure that the source has a systemId
      * @param source
      */
-    private void provideSystemIdIfRequired(Source source) {
+    private static void provideSystemIdIfRequired(Source source) {
         if (source!=null && (source.getSystemId() == null
                              || source.getSystemId().length() == 0)) {
             source.setSystemId(getDefaultSystemId());
@@ -175,7 +259,7 @@ public class Transform {
     /**
      * @return the current working directory as an URL-form string
      */
-    private String getDefaultSystemId() {
+    private static String getDefaultSystemId() {
         try {
             return PWD.toURL().toExternalForm();
         } catch (MalformedURLException e) {
@@ -183,25 +267,134 @@ public class Transform {
                                               + "working directory!", e);
         }
     }
+
+    /**
+     * Cache key of a stylesheet given as String.
+     */
+    static Object getCacheKey(String stylesheet) {
+        return Arrays.asList(new Object[] {"content", stylesheet});
+    }
+
+    /**
+     * Cache key of a stylesheet given as File, the stylesheet is
+     * compiled again if the file changes.
+     */
+    static Object getCacheKey(File stylesheet) {
+        return Arrays.asList(new Object[] {
+                "file", stylesheet.getAbsolutePath(),
+                new Long(stylesheet.lastModified()),
+                new Long(stylesheet.length())
+            });
+    }
+
+    /**
+     * Cache key of a stylesheet given as Source, null unless the
+     * Source consists of nothing but a system ID.  The stylesheet is
+     * compiled again if a <code>file:</code> system ID identifies a
+     * file that changes.
+     */
+    static Object getCacheKey(Source stylesheet) {
+        if (stylesheet == null || stylesheet.getSystemId() == null
+            || stylesheet.getSystemId().length() == 0) {
+            return null;
+        }
+        if (stylesheet instanceof StreamSource) {
+            StreamSource s = (StreamSource) stylesheet;
+            if (s.getInputStream() != null || s.getReader() != null) {
+                return null;
+            }
+        } else if (stylesheet instanceof SAXSource) {
+            SAXSource s = (SAXSource) stylesheet;
+            InputSource is = s.getInputSource();
+            if (s.getXMLReader() != null || is == null
+                || is.getByteStream() != null
+                || is.getCharacterStream() != null) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        File f = toFile(stylesheet.getSystemId());
+        return Arrays.asList(new Object[] {
+                "systemId", stylesheet.getSystemId(),
+                new Long(f == null ? 0 : f.lastModified()),
+                new Long(f == null ? 0 : f.length())
+            });
+    }
+
+    /**
+     * The file identified by a system ID, null if it doesn't
+     * identify a local file.
+     */
+    private static File toFile(String systemId) {
+        if (!systemId.startsWith("file:")) {
+            return null;
+        }
+        try {
+            return new File(new URI(systemId));
+        } catch (Exception e) {
+            // not a valid file URI
+            return null;
+        }
+    }
+
     /**
      * Factory method
      * @param stylesheetSource
+     * @param cacheKey identifies the compiled stylesheet in the
+     * cache, null if it must not be cached
      * @throws ConfigurationException
      * @return
      */
-    private Transformer getTransformer(Source stylesheetSource)
+    private Transformer getTransformer(Source stylesheetSource,
+                                       Object cacheKey)
         throws ConfigurationException {
         try {
             TransformerFactory factory = XMLUnit.getTransformerFactory();
-            Transformer t = stylesheetSource == null
-                ? factory.newTransformer()
-                : factory.newTransformer(stylesheetSource);
-            return t;
+            if (stylesheetSource == null) {
+                return factory.newTransformer();
+            }
+            if (cacheKey == null) {
+                return factory.newTransformer(stylesheetSource);
+            }
+            Templates templates =
+                TEMPLATES.getTemplates(cacheKey, stylesheetSource);
+            return templates == null ? null : newTransformer(templates);
         } catch (javax.xml.transform.TransformerConfigurationException ex) {
             throw new ConfigurationException(ex);
         }
     }
 
+    /**
+     * Compiles a stylesheet, sharing the result with other instances
+     * if the stylesheet can be identified.
+     * @param stylesheetSource
+     * @param cacheKey identifies the compiled stylesheet in the
+     * cache, null if it must not be cached
+     * @return the compiled stylesheet, may be null if the
+     * TransformerFactory returned null
+     */
+    static Templates getTemplates(Source stylesheetSource, Object cacheKey)
+        throws javax.xml.transform.TransformerConfigurationException {
+        provideSystemIdIfRequired(stylesheetSource);
+        return cacheKey == null
+            ? XMLUnit.getTransformerFactory().newTemplates(stylesheetSource)
+            : TEMPLATES.getTemplates(cacheKey, stylesheetSource);
+    }
+
+    /**
+     * Creates a Transformer from compiled Templates, using the
+     * configured URIResolver.
+     */
+    static Transformer newTransformer(Templates templates)
+        throws javax.xml.transform.TransformerConfigurationException {
+        Transformer t = templates.newTransformer();
+        if (XMLUnit.getURIResolver() != null) {
+            t.setURIResolver(XMLUnit.getURIResolver());
+        }
+        return t;
+    }
+
     /**
      * Perform the actual transformation
      * @param result
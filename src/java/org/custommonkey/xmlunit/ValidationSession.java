@@ -0,0 +1,204 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * State shared by many DTD {@link Validator Validator}s so DTDs are
+ * only loaded and parsed once.
+ *
+ * <p>If the SAX parser is Xerces and the grammar pool class of the
+ * parser is accessible the parsed DTD grammars are kept in a grammar
+ * pool shared by all parsers using the session.  In addition - and
+ * for all other parsers - the content of external DTDs that are
+ * identified by an absolute URL is held in memory, so they are
+ * loaded only once even if they have to be parsed again.</p>
+ *
+ * <p>Cached content is never checked for modifications, use a new
+ * session or {@link #clear clear} this one if the DTDs change.  Xerces
+ * identifies grammars by the system ID given in the document's
+ * DOCTYPE declaration, so Validators sharing a session must not
+ * redirect the same DOCTYPE system ID to different DTDs.</p>
+ *
+ * <p>All methods are thread-safe, a single instance can be used by
+ * Validators in different threads.</p>
+ */
+public class ValidationSession {
+    /**
+     * Maximum number of entities whose content is held in memory.
+     */
+    public static final int MAX_CACHED_ENTITIES = 100;
+
+    private static final String GRAMMAR_POOL_PROPERTY =
+        "http://apache.org/xml/properties/internal/grammar-pool";
+    private static final String[] GRAMMAR_POOL_CLASSES = {
+        "org.apache.xerces.util.XMLGrammarPoolImpl",
+        "com.sun.org.apache.xerces.internal.util.XMLGrammarPoolImpl",
+    };
+    /** marks a grammar pool class that can't be used */
+    private static final Object UNUSABLE = new Object();
+
+    private final Map/*<String, byte[]>*/ entities =
+        new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > MAX_CACHED_ENTITIES;
+            }
+        };
+    /** grammar pool instances by class name */
+    private final Map/*<String, Object>*/ grammarPools = new HashMap();
+
+    /**
+     * Makes the given reader use a grammar pool shared by all
+     * readers using this session, if possible.
+     * @return whether the reader accepted a grammar pool
+     */
+    synchronized boolean configure(XMLReader reader) {
+        for (int i = 0; i < GRAMMAR_POOL_CLASSES.length; i++) {
+            Object pool = getGrammarPool(GRAMMAR_POOL_CLASSES[i]);
+            if (pool == UNUSABLE) {
+                continue;
+            }
+            try {
+                reader.setProperty(GRAMMAR_POOL_PROPERTY, pool);
+                return true;
+            } catch (SAXException e) {
+                // not recognized or not supported by this parser
+            } catch (RuntimeException e) {
+                // pool belongs to a different Xerces
+            }
+        }
+        return false;
+    }
+
+    private Object getGrammarPool(String className) {
+        Object pool = grammarPools.get(className);
+        if (pool == null) {
+            try {
+                pool = Class.forName(className).newInstance();
+            } catch (Exception e) {
+                // class not present or not accessible
+                pool = UNUSABLE;
+            } catch (LinkageError e) {
+                pool = UNUSABLE;
+            }
+            grammarPools.put(className, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Replaces an InputSource that only consists of an absolute URL
+     * by one reading the cached content of that URL, loading the
+     * content if necessary.
+     *
+     * @return the given source if it can't be cached
+     */
+    InputSource resolve(InputSource source) throws IOException {
+        if (source == null || source.getByteStream() != null
+            || source.getCharacterStream() != null
+            || source.getSystemId() == null) {
+            return source;
+        }
+        String systemId = source.getSystemId();
+        URL url;
+        try {
+            url = new URL(systemId);
+        } catch (MalformedURLException e) {
+            // relative, leave resolution to the parser
+            return source;
+        }
+        byte[] content;
+        synchronized (this) {
+            content = (byte[]) entities.get(systemId);
+        }
+        if (content == null) {
+            content = load(url);
+            synchronized (this) {
+                entities.put(systemId, content);
+            }
+        }
+        InputSource cached =
+            new InputSource(new ByteArrayInputStream(content));
+        cached.setSystemId(systemId);
+        cached.setPublicId(source.getPublicId());
+        cached.setEncoding(source.getEncoding());
+        return cached;
+    }
+
+    private static byte[] load(URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Number of entities whose content is currently held in memory.
+     */
+    public synchronized int getCachedEntityCount() {
+        return entities.size();
+    }
+
+    /**
+     * Discards all cached content and parsed grammars.
+     */
+    public synchronized void clear() {
+        entities.clear();
+        grammarPools.clear();
+    }
+}
@@ -55,7 +55,6 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 /**
  * Validates XML against its internal or external DOCTYPE, or a completely
@@ -77,10 +76,20 @@ import javax.xml.parsers.SAXParserFactory;
  * <br />Examples and more at <a href="http://xmlunit.sourceforge.net"/>xmlunit.sourceforge.net</a>
  */
 public class Validator extends DefaultHandler implements ErrorHandler {
+    /**
+     * Validating parsers shared by all instances.
+     */
+    static final SAXParserPool PARSERS = new SAXParserPool(16);
+
     private final InputSource validationInputSource;
-    private final SAXParser parser;
+    /**
+     * Taken from the pool once a setter needs it or validation
+     * starts, null once it has been returned to the pool.
+     */
+    private SAXParser parser;
     private final StringBuffer messages;
     private final boolean usingDoctypeReader;
+    private ValidationSession session;
 
     private Boolean isValid;
 
@@ -109,13 +118,6 @@ public class Validator extends DefaultHandler implements ErrorHandler {
         throws SAXException, ConfigurationException {
         isValid = null;
         messages = new StringBuffer();
-        SAXParserFactory factory = XMLUnit.getSAXParserFactory();
-        factory.setValidating(true);
-        try {
-            parser = factory.newSAXParser();
-        } catch (ParserConfigurationException ex) {
-            throw new ConfigurationException(ex);
-        }
 
         this.validationInputSource = inputSource;
         if (systemId != null) {
@@ -124,6 +126,30 @@ public class Validator extends DefaultHandler implements ErrorHandler {
         this.usingDoctypeReader = usingDoctypeReader;
     }
 
+    /**
+     * Obtains a validating parser from the pool.
+     * @throws ConfigurationException if validation could not be turned on
+     */
+    private static SAXParser acquireParser()
+        throws SAXException, ConfigurationException {
+        try {
+            return PARSERS.acquire();
+        } catch (ParserConfigurationException ex) {
+            throw new ConfigurationException(ex);
+        }
+    }
+
+    /**
+     * The parser to configure or use for validation, taken from the
+     * pool on first use.
+     */
+    private SAXParser getParser() throws SAXException {
+        if (parser == null) {
+            parser = acquireParser();
+        }
+        return parser;
+    }
+
     /**
      * DOM-style constructor: allows Document validation post-manipulation
      * of the DOM tree's contents.
@@ -305,11 +331,16 @@ public class Validator extends DefaultHandler implements ErrorHandler {
      * @see #setJAXP12SchemaSource(Object)
      */
     public void useXMLSchema(boolean use) throws SAXException {
+        if (isValid != null) {
+            // validation has been performed already
+            return;
+        }
         boolean tryXercesProperties = false;
         try {
             if (use) {
-                parser.setProperty(JAXPConstants.Properties.SCHEMA_LANGUAGE,
-                                   XMLConstants.W3C_XML_SCHEMA_NS_URI);
+                getParser()
+                    .setProperty(JAXPConstants.Properties.SCHEMA_LANGUAGE,
+                                 XMLConstants.W3C_XML_SCHEMA_NS_URI);
             }
         } catch (SAXNotRecognizedException e) {
             tryXercesProperties = true;
@@ -318,11 +349,21 @@ public class Validator extends DefaultHandler implements ErrorHandler {
         }
 
         if (tryXercesProperties) {
-            parser.getXMLReader().setFeature("http://apache.org/xml/features/validation/schema", use);
-            parser.getXMLReader().setFeature("http://apache.org/xml/features/validation/dynamic", use);
+            getParser().getXMLReader().setFeature("http://apache.org/xml/features/validation/schema", use);
+            getParser().getXMLReader().setFeature("http://apache.org/xml/features/validation/dynamic", use);
         }
     }
 
+    /**
+     * Shares loaded and parsed DTDs with all other Validators using
+     * the same session.
+     *
+     * <p>Must be called before the validation is performed.</p>
+     */
+    public void setValidationSession(ValidationSession session) {
+        this.session = session;
+    }
+
     /**
      * Perform the validation of the source against DTD / Schema.
      * 
@@ -373,11 +414,20 @@ public class Validator extends DefaultHandler implements ErrorHandler {
         }
 
         try {
-            parser.parse(validationInputSource, this);
+            SAXParser p = getParser();
+            if (session != null) {
+                session.configure(p.getXMLReader());
+            }
+            p.parse(validationInputSource, this);
         } catch (SAXException e) {
             parserException(e);
         } catch (IOException e) {
             parserException(e);
+        } finally {
+            if (parser != null) {
+                PARSERS.release(parser);
+                parser = null;
+            }
         }
 
         if (isValid == null) {
@@ -443,6 +493,20 @@ public class Validator extends DefaultHandler implements ErrorHandler {
      * @return the sax InputSource that points to the overridden systemID
      */
     public InputSource resolveEntity(String publicId, String systemId) {
+        InputSource s = resolveEntityWithoutSession(publicId, systemId);
+        if (session == null) {
+            return s;
+        }
+        try {
+            return session.resolve(s);
+        } catch (IOException e) {
+            // let the parser fail when it tries to read the entity
+            return s;
+        }
+    }
+
+    private InputSource resolveEntityWithoutSession(String publicId,
+                                                    String systemId) {
         if (validationInputSource.getSystemId() != null) {
             return new InputSource(validationInputSource.getSystemId());
         } else {
@@ -516,8 +580,12 @@ public class Validator extends DefaultHandler implements ErrorHandler {
      * @see http://java.sun.com/webservices/jaxp/change-requests-11.html
      */
     public void setJAXP12SchemaSource(Object schemaSource) throws SAXException {
-        parser.setProperty(JAXPConstants.Properties.SCHEMA_SOURCE,
-                           schemaSource);
+        if (isValid != null) {
+            // validation has been performed already
+            return;
+        }
+        getParser().setProperty(JAXPConstants.Properties.SCHEMA_SOURCE,
+                                schemaSource);
     }
 
     private static String getOriginalContent(InputSource s)
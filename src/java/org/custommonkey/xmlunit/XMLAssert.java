@@ -574,7 +574,7 @@ public class XMLAssert extends Assert implements XSLTConstants {
                                             Document testDocument,
                                             boolean equal)
         throws XpathException {
-        XpathEngine xpath = XMLUnit.newXpathEngine();
+        XpathEngine xpath = XMLUnit.getSharedXpathEngine();
         Diff diff = new Diff(asXpathResultDocument(XMLUnit.newControlParser(),
                                                    xpath.getMatchingNodes(controlXpath,
                                                                           controlDocument)),
@@ -686,7 +686,7 @@ public class XMLAssert extends Assert implements XSLTConstants {
                                               String testXpath,
                                               Document testDocument)
         throws XpathException {
-        XpathEngine xpath = XMLUnit.newXpathEngine();
+        XpathEngine xpath = XMLUnit.getSharedXpathEngine();
         assertEquals(xpath.evaluate(controlXpath, controlDocument),
                      xpath.evaluate(testXpath, testDocument));
     }
@@ -795,7 +795,7 @@ public class XMLAssert extends Assert implements XSLTConstants {
                                                  String testXpath,
                                                  Document testDocument)
         throws XpathException {
-        XpathEngine xpath = XMLUnit.newXpathEngine();
+        XpathEngine xpath = XMLUnit.getSharedXpathEngine();
         String control = xpath.evaluate(controlXpath, controlDocument);
         String test = xpath.evaluate(testXpath, testDocument);
         if (control!=null) {
@@ -856,7 +856,7 @@ public class XMLAssert extends Assert implements XSLTConstants {
                                               String xpathExpression,
                                               Document inDocument)
         throws XpathException {
-        XpathEngine simpleXpathEngine = XMLUnit.newXpathEngine();
+        XpathEngine simpleXpathEngine = XMLUnit.getSharedXpathEngine();
         assertEquals(expectedValue,
                      simpleXpathEngine.evaluate(xpathExpression, inDocument));
     }
@@ -896,7 +896,7 @@ public class XMLAssert extends Assert implements XSLTConstants {
     public static void assertXpathExists(String xPathExpression, 
                                          Document inDocument)
         throws XpathException {
-        XpathEngine simpleXpathEngine = XMLUnit.newXpathEngine();
+        XpathEngine simpleXpathEngine = XMLUnit.getSharedXpathEngine();
         NodeList nodeList = simpleXpathEngine.getMatchingNodes(
                                                                xPathExpression, inDocument);
         int matches = nodeList.getLength();
@@ -939,7 +939,7 @@ public class XMLAssert extends Assert implements XSLTConstants {
     public static void assertXpathNotExists(String xPathExpression, 
                                             Document inDocument)
         throws XpathException {
-        XpathEngine simpleXpathEngine = XMLUnit.newXpathEngine();
+        XpathEngine simpleXpathEngine = XMLUnit.getSharedXpathEngine();
         NodeList nodeList = simpleXpathEngine.getMatchingNodes(
                                                                xPathExpression, inDocument);
         int matches = nodeList.getLength();
@@ -82,8 +82,14 @@ public final class XMLUnit {
     private static boolean ignoreAttributeOrder = false;
     private static String xsltVersion = "1.0";
     private static String xpathFactoryName = null;
+    /** engine used by XMLAssert, see getSharedXpathEngine */
+    private static volatile XpathEngine sharedXpathEngine = null;
     private static boolean expandEntities = false;
     private static boolean compareUnmatched = true;
+    private static boolean skipIdenticalSubtrees = false;
+    private static boolean iterativeComparison = false;
+    private static int comparisonThreads = 1;
+    private static boolean modifyDocumentsInPlace = false;
 
     private static final String XSLT_VERSION_START = " version=\"";
     private static final String XSLT_VERSION_END = "\">";
@@ -447,6 +453,7 @@ public final class XMLUnit {
     public static void setSAXParserFactory(String className) {
         System.setProperty("javax.xml.parsers.SAXParserFactory", className);
         saxParserFactory = null;
+        Validator.PARSERS.clear();
         getSAXParserFactory();
     }
 
@@ -457,6 +464,7 @@ public final class XMLUnit {
      */
     public static void setSAXParserFactory(SAXParserFactory factory) {
         saxParserFactory = factory;
+        Validator.PARSERS.clear();
     }
 
     /**
@@ -466,6 +474,18 @@ public final class XMLUnit {
      * setSAXParserFactory(SAXParserFactory) setSAXParserFactory}
      * explicitly, the returned factory will be namespace aware.</p>
      *
+     * <p>The Validator never modifies this factory.  Unless it is
+     * validating, the Validator uses a validating factory of its own
+     * that is created once - when the first Validator needs it after
+     * the factory has been set - and copies namespace and XInclude
+     * awareness, the Schema and a set of well known features
+     * (secure processing, namespace-prefixes, external general and
+     * parameter entities, Xerces' disallow-doctype-decl and
+     * load-external-dtd) from this factory.  Set the factory to
+     * validating if all of its settings need to be honoured.  Call
+     * {@link setSAXParserFactory(SAXParserFactory)
+     * setSAXParserFactory} again after modifying the factory.</p>
+     *
      * @return the SAXParserFactory instance used by the {@link
      * Validator Validator} to perform DTD validation
      */
@@ -649,23 +669,28 @@ public final class XMLUnit {
      */
     public static void setXpathNamespaceContext(NamespaceContext ctx) {
         namespaceContext = ctx;
+        sharedXpathEngine = null;
     }
 
     /**
      * Obtains an XpathEngine to use in XPath tests.
+     *
+     * <p>If JAXP 1.3 is available the returned engine is an
+     * <code>org.custommonkey.xmlunit.jaxp13.ConcurrentXpathEngine</code>
+     * and may be used by several threads at the same time.</p>
      */
     public static XpathEngine newXpathEngine() {
         XpathEngine eng = null;
         try {
-            Class.forName("javax.xml.xpath.XPath");
-            Class c = Class.forName("org.custommonkey.xmlunit.jaxp13"
-                                    + ".Jaxp13XpathEngine");
-            eng = (XpathEngine) c.newInstance();
+            if (XpathEngineClass.VALUE != null) {
+                eng = (XpathEngine) XpathEngineClass.VALUE.newInstance();
+            }
         } catch (Throwable ex) {
-            // should probably only catch ClassNotFoundException, but some
-            // constellations - like Ant shipping a more recent version of
-            // xml-apis than the JDK - may contain the JAXP 1.3 interfaces
-            // without implementations
+            // some constellations - like Ant shipping a more recent
+            // version of xml-apis than the JDK - may contain the JAXP
+            // 1.3 interfaces without implementations
+        }
+        if (eng == null) {
             eng = new SimpleXpathEngine();
         }
         if (namespaceContext != null) {
@@ -674,6 +699,27 @@ public final class XMLUnit {
         return eng;
     }
 
+    /**
+     * An XpathEngine configured like the ones returned by {@link
+     * #newXpathEngine newXpathEngine} that is shared by XMLAssert's
+     * XPath assertions.
+     *
+     * <p>The shared engine is only replaced when the namespace
+     * context changes.  Without JAXP 1.3 a new engine is returned
+     * each time since the fallback engine is not thread-safe.</p>
+     */
+    static XpathEngine getSharedXpathEngine() {
+        XpathEngine eng = sharedXpathEngine;
+        if (eng == null) {
+            eng = newXpathEngine();
+            if (eng instanceof SimpleXpathEngine) {
+                return eng;
+            }
+            sharedXpathEngine = eng;
+        }
+        return eng;
+    }
+
     /**
      * Whether CDATA sections and Text nodes should be considered the same.
      *
@@ -899,5 +945,175 @@ public final class XMLUnit {
     public static boolean getCompareUnmatched() {
         return compareUnmatched;
     }
-}
 
+    /**
+     * Whether the DifferenceEngine may skip subtrees that are
+     * known to be identical.
+     *
+     * <p>If set, the DifferenceEngine computes a structural hash
+     * (a "fingerprint") of each node in both documents before the
+     * comparison starts.  It doesn't descend into elements whose
+     * control and test fingerprints are the same once a quick walk
+     * over both subtrees - that doesn't create any Difference
+     * instances - has confirmed they are identical, so a hash
+     * collision can't hide a difference.  The fingerprints
+     * take the whitespace, comment, attribute order and Text vs CDATA
+     * settings into account.  This can make comparisons of large and
+     * mostly identical documents a lot faster at the cost of memory
+     * for the fingerprints.</p>
+     *
+     * <p>Subtrees are never skipped if a {@link MatchTracker} is
+     * used since it wants to see every single match.  Skipping
+     * assumes the ElementQualifier in use qualifies identical
+     * elements for comparison, which is true for all qualifiers
+     * shipping with XMLUnit.</p>
+     *
+     * <p>Defaults to false.</p>
+     */
+    public static void setSkipIdenticalSubtrees(boolean b) {
+        skipIdenticalSubtrees = b;
+    }
+
+    /**
+     * Whether the DifferenceEngine may skip subtrees that are
+     * known to be identical.
+     */
+    public static boolean getSkipIdenticalSubtrees() {
+        return skipIdenticalSubtrees;
+    }
+
+    /**
+     * Whether the DifferenceEngine shall traverse the documents
+     * using an explicit stack rather than recursion.
+     *
+     * <p>The recursive traversal needs a few stack frames per level
+     * of nesting and may run into a StackOverflowError for very
+     * deeply nested documents.  The iterative traversal visits the
+     * nodes in exactly the same order and reports the same
+     * differences with the same XPath locations.</p>
+     *
+     * <p>In iterative mode the protected compareNode,
+     * compareNodeChildren and compareNodeList methods of
+     * DifferenceEngine are not used to descend into child nodes, so
+     * subclasses overriding them won't see those calls.</p>
+     *
+     * <p>Defaults to false.</p>
+     */
+    public static void setIterativeComparison(boolean b) {
+        iterativeComparison = b;
+    }
+
+    /**
+     * Whether the DifferenceEngine shall traverse the documents
+     * using an explicit stack rather than recursion.
+     */
+    public static boolean getIterativeComparison() {
+        return iterativeComparison;
+    }
+
+    /**
+     * Number of threads the DifferenceEngine may use to compare
+     * sibling subtrees in parallel.
+     *
+     * <p>If set to a value bigger than one, the DifferenceEngine
+     * hands pairs of matched elements with children to worker
+     * threads once it encounters a list of child nodes containing
+     * at least that many such pairs.  The DifferenceListener and
+     * ComparisonController are only ever invoked by the thread that
+     * started the comparison and see the same differences in the
+     * same order as in a sequential comparison.</p>
+     *
+     * <p>The DOM implementation must allow different threads to
+     * read distinct subtrees of a document at the same time, the
+     * DifferenceEngine touches all nodes of a subtree before handing
+     * it to a worker in order to make this work for lazily expanded
+     * DOM trees like the ones created by Xerces.  Subtrees are always
+     * compared sequentially if a MatchTracker has been set or for
+     * subclasses of DifferenceEngine.</p>
+     *
+     * <p>ElementQualifiers are invoked by the worker threads, so
+     * they must be thread-safe and must not modify the DOM.  This is
+     * why subtrees are only compared in parallel if the
+     * ElementQualifier is an {@link ElementNameQualifier} or an
+     * {@link ElementNameAndAttributeQualifier} - and not an instance
+     * of a subclass of either.  Any other ElementQualifier - like
+     * {@link ElementNameAndTextQualifier}, which normalizes elements
+     * - makes the DifferenceEngine compare sequentially.</p>
+     *
+     * <p>Defaults to 1.</p>
+     */
+    public static void setComparisonThreads(int threads) {
+        comparisonThreads = threads;
+    }
+
+    /**
+     * Number of threads the DifferenceEngine may use to compare
+     * sibling subtrees in parallel.
+     */
+    public static int getComparisonThreads() {
+        return comparisonThreads;
+    }
+
+    /**
+     * A snapshot of the current values of all options that control
+     * a comparison.
+     *
+     * <p>Diff and DifferenceEngine use this snapshot unless they
+     * have been given an explicit ComparisonSettings instance.</p>
+     */
+    public static ComparisonSettings getComparisonSettings() {
+        return new ComparisonSettings(ignoreWhitespace, ignoreComments,
+                                      normalize, normalizeWhitespace,
+                                      ignoreDiffBetweenTextAndCDATA,
+                                      ignoreAttributeOrder, compareUnmatched,
+                                      skipIdenticalSubtrees,
+                                      iterativeComparison, comparisonThreads,
+                                      modifyDocumentsInPlace);
+    }
+
+    /**
+     * Whether Diff may strip whitespace and comments from and
+     * normalize the documents passed to it rather than copies of
+     * them.
+     *
+     * <p>If any of {@link #setIgnoreWhitespace ignoreWhitespace},
+     * {@link #setIgnoreComments ignoreComments} or {@link
+     * #setNormalize normalize} is set, Diff has to modify the
+     * documents before comparing them and by default creates a copy
+     * of each document to do so.  Setting this option avoids the
+     * copies, which saves memory for big documents, but the
+     * documents you pass in are changed.</p>
+     *
+     * <p>Defaults to false.</p>
+     */
+    public static void setModifyDocumentsInPlace(boolean b) {
+        modifyDocumentsInPlace = b;
+    }
+
+    /**
+     * Whether Diff may strip whitespace and comments from and
+     * normalize the documents passed to it rather than copies of
+     * them.
+     */
+    public static boolean getModifyDocumentsInPlace() {
+        return modifyDocumentsInPlace;
+    }
+
+    /**
+     * Holds the class of Jaxp13XpathEngine - or null if JAXP 1.3 is
+     * not available - so it is only looked up once.
+     */
+    private static final class XpathEngineClass {
+        private static final Class VALUE = load();
+
+        private static Class load() {
+            try {
+                Class.forName("javax.xml.xpath.XPath");
+                return Class.forName("org.custommonkey.xmlunit.jaxp13"
+                                     + ".ConcurrentXpathEngine");
+            } catch (Throwable ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -65,6 +65,20 @@ public class XpathNodeTracker implements XMLConstants {
         newLevel();
     }
         
+    /**
+     * Creates an independent copy of this tracker's current state.
+     */
+    XpathNodeTracker copy() {
+        XpathNodeTracker copy = new XpathNodeTracker();
+        copy.indentationList.clear();
+        for (Iterator iter = indentationList.iterator(); iter.hasNext(); ) {
+            TrackingEntry entry = ((TrackingEntry) iter.next()).copy();
+            copy.indentationList.add(entry);
+            copy.currentEntry = entry;
+        }
+        return copy;
+    }
+
     /**
      * Clear state data.
      * Call if required to reuse an existing instance.
@@ -298,6 +312,27 @@ public class XpathNodeTracker implements XMLConstants {
             }
         }
                 
+        /**
+         * A copy that doesn't share any mutable state with this
+         * entry.  The map of preloaded node references is shared
+         * since it is only read once preloading has finished.
+         */
+        private TrackingEntry copy() {
+            TrackingEntry copy = new TrackingEntry();
+            for (Iterator iter = valueMap.entrySet().iterator();
+                 iter.hasNext(); ) {
+                Map.Entry e = (Map.Entry) iter.next();
+                copy.valueMap.put(e.getKey(),
+                                  new Int(((Int) e.getValue()).getValue()));
+            }
+            copy.currentValue = currentValue;
+            copy.currentAttribute = currentAttribute;
+            copy.nodeReferenceMap = nodeReferenceMap;
+            copy.trackNodeReferences = trackNodeReferences;
+            copy.nodeReferenceLookup = nodeReferenceLookup;
+            return copy;
+        }
+
         public void trackNodesAsWellAsValues(boolean yesNo) {
             this.trackNodeReferences = yesNo;
             if (yesNo) {
@@ -0,0 +1,217 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit.jaxp13;
+
+import org.custommonkey.xmlunit.BatchXpathEngine;
+import org.custommonkey.xmlunit.NamespaceContext;
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.custommonkey.xmlunit.exceptions.XpathException;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+/**
+ * Thread-safe XPath engine based on javax.xml.xpath.
+ *
+ * <p>Unlike {@link Jaxp13XpathEngine Jaxp13XpathEngine} - which wraps
+ * a single, not thread-safe, XPath instance - a single instance of
+ * this class can be used by any number of threads at the same time.
+ * Each thread uses an XPath of its own - shared by all instances of
+ * this class and recreated if {@link
+ * org.custommonkey.xmlunit.XMLUnit#setXPathFactory XMLUnit's
+ * XPathFactory} changes - to compile expressions, the compiled
+ * expressions are shared by all threads via an {@link
+ * XPathExpressionCache XPathExpressionCache}.</p>
+ *
+ * <p>The namespace context applies to all threads, changing it while
+ * other threads evaluate expressions only affects the evaluations
+ * started after the change.</p>
+ *
+ * <p>Note that the engine doesn't make the documents thread-safe,
+ * some DOM implementations modify their internal state even while
+ * a document is only read.</p>
+ */
+public class ConcurrentXpathEngine implements BatchXpathEngine {
+
+    private final XPathExpressionCache cache;
+    /** the current thread's XPath, shared by all engines */
+    private static final ThreadLocal/*<ThreadState>*/ THREAD_STATE =
+        new ThreadLocal();
+    private volatile XMLUnitNamespaceContext2Jaxp13 namespaceContext;
+
+    /**
+     * Creates an engine using the {@link
+     * XPathExpressionCache#getSharedInstance shared cache}.
+     */
+    public ConcurrentXpathEngine() {
+        this(XPathExpressionCache.getSharedInstance());
+    }
+
+    /**
+     * Creates an engine using the given cache.
+     * @param cache the cache for compiled expressions, must not be
+     * null
+     */
+    public ConcurrentXpathEngine(XPathExpressionCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache must not be null");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * Execute the specified xpath syntax <code>select</code> expression
+     * on the specified document and return the list of nodes (could have
+     * length zero) that match
+     * @param select
+     * @param document
+     * @return list of matching nodes
+     */
+    public NodeList getMatchingNodes(String select, Document document)
+        throws XpathException {
+        try {
+            return (NodeList) evaluate(select, document,
+                                       XPathConstants.NODESET);
+        } catch (XPathExpressionException ex) {
+            throw new XpathException(ex);
+        }
+    }
+
+    /**
+     * Evaluate the result of executing the specified xpath syntax
+     * <code>select</code> expression on the specified document
+     * @param select
+     * @param document
+     * @return evaluated result
+     */
+    public String evaluate(String select, Document document)
+        throws XpathException {
+        try {
+            return (String) evaluate(select, document,
+                                     XPathConstants.STRING);
+        } catch (XPathExpressionException ex) {
+            throw new XpathException(ex);
+        }
+    }
+
+    /**
+     * Execute all specified xpath syntax <code>select</code>
+     * expressions on the specified document and return the lists of
+     * nodes that match.
+     * @param selects
+     * @param document
+     * @return one list of matching nodes per expression
+     */
+    public NodeList[] getMatchingNodes(String[] selects, Document document)
+        throws XpathException {
+        NodeList[] nodes = new NodeList[selects.length];
+        for (int i = 0; i < selects.length; i++) {
+            nodes[i] = getMatchingNodes(selects[i], document);
+        }
+        return nodes;
+    }
+
+    /**
+     * Evaluate the results of executing all specified xpath syntax
+     * <code>select</code> expressions on the specified document
+     * @param selects
+     * @param document
+     * @return one evaluated result per expression
+     */
+    public String[] evaluate(String[] selects, Document document)
+        throws XpathException {
+        String[] values = new String[selects.length];
+        for (int i = 0; i < selects.length; i++) {
+            values[i] = evaluate(selects[i], document);
+        }
+        return values;
+    }
+
+    public void setNamespaceContext(NamespaceContext ctx) {
+        namespaceContext = ctx == null
+            ? null : new XMLUnitNamespaceContext2Jaxp13(ctx);
+    }
+
+    private Object evaluate(String select, Document document,
+                            QName returnType)
+        throws XPathExpressionException, ConfigurationException {
+        XMLUnitNamespaceContext2Jaxp13 ctx = namespaceContext;
+        return cache.evaluate(select, getXPath(ctx), ctx, document,
+                              returnType);
+    }
+
+    /**
+     * The current thread's XPath configured with the given namespace
+     * context.
+     */
+    private XPath getXPath(XMLUnitNamespaceContext2Jaxp13 ctx)
+        throws ConfigurationException {
+        ThreadState state = (ThreadState) THREAD_STATE.get();
+        if (state == null) {
+            state = new ThreadState();
+            THREAD_STATE.set(state);
+        }
+        XPathFactory factory = Jaxp13XpathEngine.getFactory();
+        if (state.factory != factory) {
+            state.factory = factory;
+            state.xpath = null;
+        }
+        if (state.xpath == null || state.namespaceContext != ctx) {
+            // an XPath's namespace context can't be reset to null
+            if (state.xpath == null || ctx == null) {
+                state.xpath = factory.newXPath();
+            }
+            if (ctx != null) {
+                state.xpath.setNamespaceContext(ctx);
+            }
+            state.namespaceContext = ctx;
+        }
+        return state.xpath;
+    }
+
+    private static final class ThreadState {
+        private XPathFactory factory;
+        private XPath xpath;
+        private XMLUnitNamespaceContext2Jaxp13 namespaceContext;
+    }
+}
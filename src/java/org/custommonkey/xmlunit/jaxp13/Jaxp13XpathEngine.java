@@ -36,12 +36,13 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.custommonkey.xmlunit.jaxp13;
 
+import org.custommonkey.xmlunit.BatchXpathEngine;
 import org.custommonkey.xmlunit.NamespaceContext;
 import org.custommonkey.xmlunit.XMLUnit;
-import org.custommonkey.xmlunit.XpathEngine;
 import org.custommonkey.xmlunit.exceptions.ConfigurationException;
 import org.custommonkey.xmlunit.exceptions.XpathException;
 
+import javax.xml.namespace.QName;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -52,25 +53,76 @@ import org.w3c.dom.NodeList;
 
 /**
  * XPath engine based on javax.xml.xpath.
+ *
+ * <p>Compiled expressions are kept in an {@link XPathExpressionCache
+ * XPathExpressionCache} so expressions used over and over again are
+ * only compiled once.</p>
  */
-public class Jaxp13XpathEngine implements XpathEngine {
+public class Jaxp13XpathEngine implements BatchXpathEngine {
+
+    /**
+     * The current thread's XPathFactory - XPathFactory is not
+     * thread-safe.
+     */
+    private static final ThreadLocal/*<FactoryState>*/ FACTORY =
+        new ThreadLocal();
 
     private final XPath xpath;
+    private final XPathExpressionCache cache;
+    private XMLUnitNamespaceContext2Jaxp13 namespaceContext;
 
+    /**
+     * Creates an engine using the {@link
+     * XPathExpressionCache#getSharedInstance shared cache}.
+     */
     public Jaxp13XpathEngine() throws ConfigurationException {
-        try {
-            XPathFactory f = null;
-            if (XMLUnit.getXPathFactory() != null) {
-                f = (XPathFactory) Class.forName(XMLUnit.getXPathFactory())
-                    .newInstance();
-            } else {
-                f = XPathFactory.newInstance();
-            }
+        this(XPathExpressionCache.getSharedInstance());
+    }
+
+    /**
+     * Creates an engine using the given cache.
+     * @param cache the cache for compiled expressions, expressions
+     * are compiled each time they are used if null
+     */
+    public Jaxp13XpathEngine(XPathExpressionCache cache)
+        throws ConfigurationException {
+        this.cache = cache;
+        xpath = newXPath();
+    }
+
+    /**
+     * Creates a new XPath.
+     */
+    static XPath newXPath() throws ConfigurationException {
+        return getFactory().newXPath();
+    }
 
-            xpath = f.newXPath();
-        } catch (Exception ex) {
-            throw new ConfigurationException(ex);
+    /**
+     * The current thread's XPathFactory.
+     *
+     * <p>Creating the XPathFactory involves a service lookup or
+     * reflection, so each thread keeps its factory and only
+     * recreates it if {@link XMLUnit#setXPathFactory XMLUnit's
+     * configuration} changes.</p>
+     */
+    static XPathFactory getFactory() throws ConfigurationException {
+        String configured = XMLUnit.getXPathFactory();
+        FactoryState state = (FactoryState) FACTORY.get();
+        if (state == null
+            || (configured == null ? state.name != null
+                : !configured.equals(state.name))) {
+            try {
+                state = new FactoryState(configured, configured != null
+                                         ? (XPathFactory)
+                                         Class.forName(configured)
+                                         .newInstance()
+                                         : XPathFactory.newInstance());
+            } catch (Exception ex) {
+                throw new ConfigurationException(ex);
+            }
+            FACTORY.set(state);
         }
+        return state.factory;
     }
 
     /**
@@ -84,8 +136,8 @@ public class Jaxp13XpathEngine implements XpathEngine {
     public NodeList getMatchingNodes(String select, Document document)
         throws XpathException {
         try {
-            return (NodeList) xpath.evaluate(select, document,
-                                             XPathConstants.NODESET);
+            return (NodeList) evaluate(select, document,
+                                       XPathConstants.NODESET);
         } catch (XPathExpressionException ex) {
             throw new XpathException(ex);
         }
@@ -103,13 +155,69 @@ public class Jaxp13XpathEngine implements XpathEngine {
     public String evaluate(String select, Document document)
         throws XpathException {
         try {
-            return xpath.evaluate(select, document);
+            return (String) evaluate(select, document,
+                                     XPathConstants.STRING);
         } catch (XPathExpressionException ex) {
             throw new XpathException(ex);
         }
     }
 
+    /**
+     * Execute all specified xpath syntax <code>select</code>
+     * expressions on the specified document and return the lists of
+     * nodes that match.
+     * @param selects
+     * @param document
+     * @return one list of matching nodes per expression
+     */
+    public NodeList[] getMatchingNodes(String[] selects, Document document)
+        throws XpathException {
+        NodeList[] nodes = new NodeList[selects.length];
+        for (int i = 0; i < selects.length; i++) {
+            nodes[i] = getMatchingNodes(selects[i], document);
+        }
+        return nodes;
+    }
+
+    /**
+     * Evaluate the results of executing all specified xpath syntax
+     * <code>select</code> expressions on the specified document
+     * @param selects
+     * @param document
+     * @return one evaluated result per expression
+     */
+    public String[] evaluate(String[] selects, Document document)
+        throws XpathException {
+        String[] values = new String[selects.length];
+        for (int i = 0; i < selects.length; i++) {
+            values[i] = evaluate(selects[i], document);
+        }
+        return values;
+    }
+
     public void setNamespaceContext(NamespaceContext ctx) {
-        xpath.setNamespaceContext(new XMLUnitNamespaceContext2Jaxp13(ctx));
+        namespaceContext = new XMLUnitNamespaceContext2Jaxp13(ctx);
+        xpath.setNamespaceContext(namespaceContext);
+    }
+
+    private Object evaluate(String select, Document document,
+                            QName returnType)
+        throws XPathExpressionException {
+        if (cache == null) {
+            return xpath.evaluate(select, document, returnType);
+        }
+        return cache.evaluate(select, xpath, namespaceContext, document,
+                              returnType);
+    }
+
+    private static final class FactoryState {
+        /** the configured XPathFactory class name */
+        private final String name;
+        private final XPathFactory factory;
+
+        private FactoryState(String name, XPathFactory factory) {
+            this.name = name;
+            this.factory = factory;
+        }
     }
 }
@@ -0,0 +1,144 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit.jaxp13;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.validation.Schema;
+
+/**
+ * Bounded cache of compiled schemas used by {@link Validator
+ * Validator}, the least recently used schema is evicted once the
+ * cache is full.
+ *
+ * <p>Schemas are keyed by the schema language or SchemaFactory used
+ * to compile them and the system IDs of their sources - plus the
+ * modification time for sources that are local files.  Sources that
+ * carry their content in a stream, reader or DOM tree can't be
+ * identified, Validators using such sources don't use the cache at
+ * all.</p>
+ *
+ * <p>All methods are thread-safe and so are compiled Schemas, a
+ * single instance can be shared by all Validators - which is what
+ * Validator does unless it has been given a different one.</p>
+ */
+public final class SchemaCache {
+
+    /**
+     * Maximum size of the {@link #getSharedInstance shared
+     * instance}.
+     */
+    public static final int DEFAULT_MAX_SIZE = 50;
+
+    private static final SchemaCache SHARED =
+        new SchemaCache(DEFAULT_MAX_SIZE);
+
+    private final Map/*<Object, Schema>*/ schemas;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache holding at most the given number of schemas.
+     */
+    public SchemaCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        schemas = new LinkedHashMap(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                    return size() > maxSize;
+                }
+            };
+    }
+
+    /**
+     * The cache used by all Validator instances that haven't been
+     * given one explicitly.
+     */
+    public static SchemaCache getSharedInstance() {
+        return SHARED;
+    }
+
+    /**
+     * Number of lookups that found a compiled schema.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups that didn't find a compiled schema.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Number of schemas currently held.
+     */
+    public synchronized int size() {
+        return schemas.size();
+    }
+
+    /**
+     * Removes all schemas and resets the counters.
+     */
+    public synchronized void clear() {
+        schemas.clear();
+        hits = misses = 0;
+    }
+
+    /**
+     * The schema stored for the given key, if any.
+     */
+    synchronized Schema get(Object key) {
+        Schema s = (Schema) schemas.get(key);
+        if (s != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return s;
+    }
+
+    /**
+     * Stores a compiled schema.
+     */
+    synchronized void put(Object key, Schema schema) {
+        schemas.put(key, schema);
+    }
+}
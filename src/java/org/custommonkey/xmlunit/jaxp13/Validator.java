@@ -36,14 +36,28 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.custommonkey.xmlunit.jaxp13;
 
+import java.io.File;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -61,11 +75,24 @@ import org.xml.sax.SAXParseException;
  * the instance document will be ignored if any schema source has been
  * set.  This means you must either specify all sources or none of
  * them to successfully validate instances.</p>
+ *
+ * <p>The schema is compiled once and reused for all instances until
+ * another schema source is added.  Compiled schemas are also shared
+ * between Validator instances via a {@link SchemaCache SchemaCache}
+ * if all schema sources can be identified by their system ID.</p>
+ *
+ * <p>Many instances can be validated at once - optionally in
+ * parallel - using {@link #getInstanceErrors(Collection, Executor)
+ * getInstanceErrors(Collection, Executor)}.</p>
  */
 public class Validator {
     private final String schemaLanguage;
     private final SchemaFactory factory;
     private final ArrayList sources = new ArrayList();
+    private SchemaCache schemaCache = SchemaCache.getSharedInstance();
+    private CompiledSchema schema;
+    private int maxErrorsPerInstance = Integer.MAX_VALUE;
+    private boolean failFast = false;
 
     /**
      * validates using W3C XML Schema 1.0.
@@ -107,8 +134,43 @@ public class Validator {
     /**
      * Adds a source for the schema defintion.
      */
-    public void addSchemaSource(Source s) {
+    public synchronized void addSchemaSource(Source s) {
         sources.add(s);
+        schema = null;
+    }
+
+    /**
+     * Sets the cache compiled schemas are shared by, null disables
+     * sharing.
+     *
+     * <p>Defaults to the {@link SchemaCache#getSharedInstance shared
+     * instance}.</p>
+     */
+    public synchronized void setSchemaCache(SchemaCache cache) {
+        schemaCache = cache;
+    }
+
+    /**
+     * Stops validating an instance once the given number of errors
+     * has been found.
+     *
+     * <p>Defaults to no limit at all.</p>
+     */
+    public synchronized void setMaxErrorsPerInstance(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be positive");
+        }
+        maxErrorsPerInstance = max;
+    }
+
+    /**
+     * Whether {@link #getInstanceErrors(Collection, Executor)
+     * validating many instances} stops at the first error found.
+     *
+     * <p>Defaults to false.</p>
+     */
+    public synchronized void setFailFast(boolean b) {
+        failFast = b;
     }
 
     /**
@@ -176,18 +238,110 @@ public class Validator {
      */
     public List/*<SAXParseException>*/ getInstanceErrors(Source instance)
         throws XMLUnitRuntimeException {
-        Schema schema = null;
-        try {
-            schema = parseSchema(null);
-        } catch (SAXException e) {
-            throw new XMLUnitRuntimeException("Schema is invalid", e);
+        int max;
+        synchronized (this) {
+            max = maxErrorsPerInstance;
         }
+        return validate(getSchema(), instance, max, null);
+    }
 
+    /**
+     * Obtain lists of all errors in the given instances.
+     *
+     * <p>The schema is compiled once, the instances are validated by
+     * the given Executor - each thread using a
+     * javax.xml.validation.Validator of its own.  The result
+     * contains one list of {@link org.xml.sax.SAXParseException
+     * SAXParseException}s per instance in the order of the
+     * instances.</p>
+     *
+     * <p>If {@link #setFailFast fail-fast} is enabled no new
+     * instance is validated once an error has been found, the
+     * result contains null for each instance that hasn't been
+     * validated.  Instances that are already being validated by
+     * other threads are completed.</p>
+     *
+     * @param instances Source instances to validate
+     * @param executor runs the validations, they are run by the
+     * calling thread one after the other if this is null
+     *
+     * @throws XMLUnitRuntimeException if the schema definition is
+     * invalid or validating any instance fails for the reasons
+     * given in {@link #getInstanceErrors(Source) getInstanceErrors}.
+     */
+    public List/*<List<SAXParseException>>*/
+        getInstanceErrors(Collection/*<Source>*/ instances,
+                          Executor executor)
+        throws XMLUnitRuntimeException {
+        final CompiledSchema s = getSchema();
+        final int max;
+        final AtomicBoolean stop;
+        synchronized (this) {
+            max = maxErrorsPerInstance;
+            stop = failFast ? new AtomicBoolean() : null;
+        }
+        List results = new ArrayList(instances.size());
+        if (executor == null) {
+            for (Iterator it = instances.iterator(); it.hasNext(); ) {
+                Source instance = (Source) it.next();
+                results.add(stop != null && stop.get()
+                            ? null : validate(s, instance, max, stop));
+            }
+            return results;
+        }
+
+        List futures = new ArrayList(instances.size());
+        for (Iterator it = instances.iterator(); it.hasNext(); ) {
+            final Source instance = (Source) it.next();
+            FutureTask f = new FutureTask(new Callable() {
+                    public Object call() {
+                        return stop != null && stop.get()
+                            ? null : validate(s, instance, max, stop);
+                    }
+                });
+            executor.execute(f);
+            futures.add(f);
+        }
+        for (Iterator it = futures.iterator(); it.hasNext(); ) {
+            FutureTask f = (FutureTask) it.next();
+            try {
+                results.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XMLUnitRuntimeException("Interrupted while waiting"
+                                                  + " for validation", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new XMLUnitRuntimeException("Error validating instance",
+                                                  cause);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Validates a single instance using an idle
+     * javax.xml.validation.Validator of the given schema.
+     *
+     * @param max stop after this many errors
+     * @param stop set once an error has been found, stops the
+     * validation immediately - may be null
+     */
+    private static List validate(CompiledSchema s, Source instance,
+                                 int max, AtomicBoolean stop)
+        throws XMLUnitRuntimeException {
         final ArrayList l = new ArrayList();
-        javax.xml.validation.Validator v = schema.newValidator();
-        v.setErrorHandler(new CollectingErrorHandler(l));
+        javax.xml.validation.Validator v = s.acquire();
+        v.setErrorHandler(new CollectingErrorHandler(l, max, stop));
         try {
             v.validate(instance);
+        } catch (ValidationStopped e) {
+            // enough errors have been collected
         } catch (SAXException e) {
             // error should have been recorded in our ErrorHandler,
             // but better double-check.
@@ -197,11 +351,103 @@ public class Validator {
         } catch (java.io.IOException i) {
             throw new XMLUnitRuntimeException("Error reading instance source",
                                               i);
+        } finally {
+            s.release(v);
         }
         return l;
     }
 
-    private Schema parseSchema(ErrorHandler h) throws SAXException {
+    /**
+     * The compiled schema, compiling it unless this instance or the
+     * SchemaCache hold it.
+     *
+     * <p>Without any sources a new schema is returned each time, such
+     * a schema loads the grammars referenced by the instance
+     * documents and may keep them around.</p>
+     *
+     * @throws XMLUnitRuntimeException if the schema definition is
+     * invalid
+     */
+    private synchronized CompiledSchema getSchema()
+        throws XMLUnitRuntimeException {
+        if (sources.size() == 0) {
+            return new CompiledSchema(compileSchema());
+        }
+        if (schema == null) {
+            Object key = schemaCache == null ? null : getCacheKey();
+            Schema s = key == null ? null : schemaCache.get(key);
+            if (s == null) {
+                s = compileSchema();
+                if (key != null) {
+                    schemaCache.put(key, s);
+                }
+            }
+            schema = new CompiledSchema(s);
+        }
+        return schema;
+    }
+
+    private Schema compileSchema() throws XMLUnitRuntimeException {
+        try {
+            return parseSchema(null);
+        } catch (SAXException e) {
+            throw new XMLUnitRuntimeException("Schema is invalid", e);
+        }
+    }
+
+    /**
+     * Identifies the compiled schema in the SchemaCache, null if any
+     * source carries its own content.
+     */
+    private Object getCacheKey() {
+        List key = new ArrayList();
+        key.add(factory != null ? (Object) factory : schemaLanguage);
+        for (Iterator it = sources.iterator(); it.hasNext(); ) {
+            Source s = (Source) it.next();
+            if (s instanceof StreamSource) {
+                StreamSource ss = (StreamSource) s;
+                if (ss.getInputStream() != null || ss.getReader() != null) {
+                    return null;
+                }
+            } else if (s instanceof SAXSource) {
+                SAXSource ss = (SAXSource) s;
+                InputSource is = ss.getInputSource();
+                if (ss.getXMLReader() != null || is == null
+                    || is.getByteStream() != null
+                    || is.getCharacterStream() != null) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+            String systemId = s.getSystemId();
+            if (systemId == null || systemId.length() == 0) {
+                return null;
+            }
+            key.add(systemId);
+            key.add(new Long(lastModified(systemId)));
+        }
+        return key;
+    }
+
+    /**
+     * Modification time of the file identified by a system ID, 0 if
+     * it doesn't identify a local file.
+     */
+    private static long lastModified(String systemId) {
+        if (!systemId.startsWith("file:")) {
+            return 0;
+        }
+        try {
+            return new File(new URI(systemId)).lastModified();
+        } catch (Exception e) {
+            // not a valid file URI
+            return 0;
+        }
+    }
+
+    private synchronized Schema parseSchema(ErrorHandler h)
+        throws SAXException {
         SchemaFactory fac = factory != null ? factory
             : SchemaFactory.newInstance(schemaLanguage);
         fac.setErrorHandler(h);
@@ -215,20 +461,66 @@ public class Validator {
         }
     }
 
+    /**
+     * A compiled schema and the javax.xml.validation.Validators
+     * created from it that are currently unused.
+     */
+    private static final class CompiledSchema {
+        private final Schema schema;
+        private final Queue/*<javax.xml.validation.Validator>*/ idle =
+            new ConcurrentLinkedQueue();
+
+        CompiledSchema(Schema schema) {
+            this.schema = schema;
+        }
+        javax.xml.validation.Validator acquire() {
+            javax.xml.validation.Validator v =
+                (javax.xml.validation.Validator) idle.poll();
+            return v != null ? v : schema.newValidator();
+        }
+        void release(javax.xml.validation.Validator v) {
+            v.reset();
+            idle.offer(v);
+        }
+    }
+
     private static final class CollectingErrorHandler implements ErrorHandler {
         private final List l;
+        private final int max;
+        private final AtomicBoolean stop;
 
         CollectingErrorHandler(List l) {
+            this(l, Integer.MAX_VALUE, null);
+        }
+        CollectingErrorHandler(List l, int max, AtomicBoolean stop) {
             this.l = l;
+            this.max = max;
+            this.stop = stop;
         }
-        public void error(SAXParseException e) {
-            l.add(e);
+        public void error(SAXParseException e) throws SAXException {
+            add(e);
         }
-        public void fatalError(SAXParseException e) {
-            l.add(e);
+        public void fatalError(SAXParseException e) throws SAXException {
+            add(e);
+        }
+        public void warning(SAXParseException e) throws SAXException {
+            add(e);
         }
-        public void warning(SAXParseException e) {
+        private void add(SAXParseException e) throws SAXException {
             l.add(e);
+            if (stop != null) {
+                stop.set(true);
+                throw new ValidationStopped();
+            }
+            if (l.size() >= max) {
+                throw new ValidationStopped();
+            }
         }
     }
+
+    /**
+     * Thrown by CollectingErrorHandler to end a validation early.
+     */
+    private static final class ValidationStopped extends SAXException {
+    }
 }
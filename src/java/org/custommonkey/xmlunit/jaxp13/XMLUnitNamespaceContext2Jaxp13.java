@@ -91,6 +91,19 @@ public class XMLUnitNamespaceContext2Jaxp13
         return i.hasNext() ? (String) i.next() : null;
     }
 
+    /**
+     * Two instances are equal if they map the same prefixes to the
+     * same URIs.
+     */
+    public boolean equals(Object o) {
+        return o instanceof XMLUnitNamespaceContext2Jaxp13
+            && nsMap.equals(((XMLUnitNamespaceContext2Jaxp13) o).nsMap);
+    }
+
+    public int hashCode() {
+        return nsMap.hashCode();
+    }
+
     private static Map turnIntoMap(NamespaceContext ctx) {
         HashMap/*<String, String>*/ m = new HashMap();
         for (Iterator i = ctx.getPrefixes(); i.hasNext(); ) {
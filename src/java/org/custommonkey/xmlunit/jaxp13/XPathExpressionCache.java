@@ -0,0 +1,216 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit.jaxp13;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * Bounded cache of compiled XPath expressions used by {@link
+ * Jaxp13XpathEngine Jaxp13XpathEngine}, the least recently used
+ * expression is evicted once the cache is full.
+ *
+ * <p>Expressions are keyed by their text, the namespace context they
+ * have been compiled with and the XPath implementation that compiled
+ * them.  All methods are thread-safe, a single instance can be shared
+ * by all engines - which is what the default constructor of
+ * Jaxp13XpathEngine does.</p>
+ *
+ * <p>The compiled expressions themselves are neither thread-safe
+ * nor reentrant.  Rather than serializing all evaluations of an
+ * expression, the cache holds a pool of compiled copies for each
+ * expression and a thread that finds no idle copy compiles another
+ * one.  The number of copies is bounded by the number of threads
+ * evaluating the same expression at the same time.</p>
+ */
+public final class XPathExpressionCache {
+
+    /**
+     * Maximum size of the {@link #getSharedInstance shared
+     * instance}.
+     */
+    public static final int DEFAULT_MAX_SIZE = 500;
+
+    private static final XPathExpressionCache SHARED =
+        new XPathExpressionCache(DEFAULT_MAX_SIZE);
+
+    private final Map/*<Key, Queue<XPathExpression>>*/ expressions;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache holding at most the given number of
+     * expressions.
+     */
+    public XPathExpressionCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        expressions = new LinkedHashMap(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                    return size() > maxSize;
+                }
+            };
+    }
+
+    /**
+     * The cache used by all Jaxp13XpathEngine instances that haven't
+     * been given one explicitly.
+     */
+    public static XPathExpressionCache getSharedInstance() {
+        return SHARED;
+    }
+
+    /**
+     * Number of lookups that found a compiled expression.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups that had to compile the expression.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Number of expressions currently held.
+     */
+    public synchronized int size() {
+        return expressions.size();
+    }
+
+    /**
+     * Removes all expressions and resets the counters.
+     */
+    public synchronized void clear() {
+        expressions.clear();
+        hits = misses = 0;
+    }
+
+    /**
+     * Evaluates the given expression using an idle compiled copy,
+     * compiling one with the given XPath if there is none.
+     * @param xpath XPath used to compile the expression, must not
+     * be used by any other thread
+     * @param namespaceContext the namespace context the XPath has
+     * been configured with, may be null
+     */
+    Object evaluate(String select, XPath xpath,
+                    XMLUnitNamespaceContext2Jaxp13 namespaceContext,
+                    Object item, QName returnType)
+        throws XPathExpressionException {
+        Key key = new Key(select, namespaceContext,
+                          xpath.getClass().getName());
+        Queue/*<XPathExpression>*/ pool;
+        synchronized (this) {
+            pool = (Queue) expressions.get(key);
+            if (pool != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        XPathExpression expr =
+            pool == null ? null : (XPathExpression) pool.poll();
+        if (expr == null) {
+            // compile outside of the lock, an invalid expression
+            // never makes it into the cache
+            expr = xpath.compile(select);
+            if (pool == null) {
+                pool = getPool(key);
+            }
+        }
+        try {
+            return expr.evaluate(item, returnType);
+        } finally {
+            pool.offer(expr);
+        }
+    }
+
+    private synchronized Queue getPool(Key key) {
+        Queue pool = (Queue) expressions.get(key);
+        if (pool == null) {
+            pool = new ConcurrentLinkedQueue();
+            expressions.put(key, pool);
+        }
+        return pool;
+    }
+
+    private static final class Key {
+        private final String select;
+        private final XMLUnitNamespaceContext2Jaxp13 namespaceContext;
+        private final String implementation;
+        private final int hashCode;
+
+        private Key(String select,
+                    XMLUnitNamespaceContext2Jaxp13 namespaceContext,
+                    String implementation) {
+            this.select = select;
+            this.namespaceContext = namespaceContext;
+            this.implementation = implementation;
+            hashCode = (select.hashCode() * 31
+                        + (namespaceContext == null
+                           ? 0 : namespaceContext.hashCode())) * 31
+                + implementation.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return select.equals(other.select)
+                && implementation.equals(other.implementation)
+                && (namespaceContext == null
+                    ? other.namespaceContext == null
+                    : namespaceContext.equals(other.namespaceContext));
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -193,6 +193,59 @@ public abstract class AbstractXpathEngineTests extends TestCase {
         }
     }
 
+    public void testBatchEvaluate() throws Exception {
+        BatchXpathEngine engine = (BatchXpathEngine) newXpathEngine();
+        String[] selects = {
+            "count(test/*)", "test/nodeWithAttributes/@attrOne", "toast",
+            "test/nodeWithoutAttributes[2]"
+        };
+        String[] results = engine.evaluate(selects, testDocument);
+        assertEquals(selects.length, results.length);
+        assertEquals("3", results[0]);
+        assertEquals("open source ", results[1]);
+        assertEquals("", results[2]);
+        assertEquals("make us all poorer ", results[3]);
+        for (int i = 0; i < selects.length; i++) {
+            assertEquals(engine.evaluate(selects[i], testDocument),
+                         results[i]);
+        }
+    }
+
+    public void testBatchGetMatchingNodes() throws Exception {
+        BatchXpathEngine engine = (BatchXpathEngine) newXpathEngine();
+        NodeList[] results = engine.getMatchingNodes(new String[] {
+                "test/nodeWithoutAttributes", "toast",
+                "test/nodeWithAttributes"
+            }, testDocument);
+        assertEquals(3, results.length);
+        assertEquals(2, results[0].getLength());
+        assertEquals(0, results[1].getLength());
+        assertEquals(1, results[2].getLength());
+        assertEquals("nodeWithAttributes", results[2].item(0).getNodeName());
+        assertEquals(Node.ELEMENT_NODE, results[2].item(0).getNodeType());
+    }
+
+    public void testBatchWithoutExpressions() throws Exception {
+        BatchXpathEngine engine = (BatchXpathEngine) newXpathEngine();
+        assertEquals(0, engine.evaluate(new String[0], testDocument).length);
+        assertEquals(0, engine.getMatchingNodes(new String[0], testDocument)
+                     .length);
+    }
+
+    public void testBatchWithInvalidXPath() throws Exception {
+        BatchXpathEngine engine = (BatchXpathEngine) newXpathEngine();
+        try {
+            engine.evaluate(new String[] {
+                    "count(test)", "count(test//*[@attrOne='open source])"
+                }, testDocument);
+            fail("expected Exception to be thrown but wasn't");
+        } catch (XpathException ex) {
+            // expected
+        } catch (ConfigurationException ex) {
+            // acceptable in the JAXP 1.2 case
+        }
+    }
+
     // https://sourceforge.net/forum/forum.php?thread_id=3292605&forum_id=73274
     public void testDefaultNamespace() throws Exception {
         String t = "<a xmlns=\"http://www.acme.com\"><b c='cv'>bv</b></a>"; 
@@ -0,0 +1,146 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit.jaxp13;
+
+import org.custommonkey.xmlunit.AbstractXpathEngineTests;
+import org.custommonkey.xmlunit.SimpleNamespaceContext;
+import org.custommonkey.xmlunit.XMLUnit;
+import org.custommonkey.xmlunit.XpathEngine;
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+
+import java.util.HashMap;
+
+import org.w3c.dom.Document;
+
+/**
+ * JUnit test for ConcurrentXpathEngine
+ */
+public class test_ConcurrentXpathEngine extends AbstractXpathEngineTests {
+
+    protected XpathEngine newXpathEngine() {
+        return new ConcurrentXpathEngine();
+    }
+
+    public void testSharedByManyThreads() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(10);
+        final ConcurrentXpathEngine engine = new ConcurrentXpathEngine(cache);
+        HashMap m = new HashMap();
+        m.put("x", "urn:x");
+        engine.setNamespaceContext(new SimpleNamespaceContext(m));
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final int n = i;
+            threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            // each thread uses documents of its own
+                            Document d = XMLUnit.buildControlDocument(
+                                "<foo xmlns='urn:x'><bar>" + n
+                                + "</bar></foo>");
+                            for (int j = 0; j < 500; j++) {
+                                assertEquals(String.valueOf(n),
+                                             engine.evaluate("/x:foo/x:bar",
+                                                             d));
+                                assertEquals(1, engine
+                                             .getMatchingNodes("//x:bar", d)
+                                             .getLength());
+                            }
+                        } catch (Throwable t) {
+                            synchronized (failure) {
+                                failure[0] = t;
+                            }
+                        }
+                    }
+                };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        if (failure[0] != null) {
+            fail(failure[0].toString());
+        }
+        assertEquals(2, cache.size());
+        assertEquals(threads.length * 1000,
+                     cache.getHits() + cache.getMisses());
+    }
+
+    public void testNamespaceContextCanBeRemoved() throws Exception {
+        Document d = XMLUnit.buildControlDocument("<foo xmlns='urn:x'/>");
+        HashMap m = new HashMap();
+        m.put("x", "urn:x");
+        XpathEngine engine = newXpathEngine();
+        engine.setNamespaceContext(new SimpleNamespaceContext(m));
+        assertEquals("1", engine.evaluate("count(/x:foo)", d));
+        engine.setNamespaceContext(null);
+        assertEquals("1", engine.evaluate("count(/*)", d));
+    }
+
+    public void testPicksUpChangedXPathFactory() throws Exception {
+        Document d = XMLUnit.buildControlDocument("<foo/>");
+        XpathEngine engine = newXpathEngine();
+        assertEquals("1", engine.evaluate("count(/foo)", d));
+        XMLUnit.setXPathFactory("org.custommonkey.xmlunit.NoSuchFactory");
+        try {
+            engine.evaluate("count(/foo)", d);
+            fail("expected a ConfigurationException");
+        } catch (ConfigurationException e) {
+            // expected
+        } finally {
+            XMLUnit.setXPathFactory(null);
+        }
+        assertEquals("1", engine.evaluate("count(/foo)", d));
+    }
+
+    public void testXMLUnitProvidesConcurrentEngine() {
+        assertTrue(XMLUnit.newXpathEngine() instanceof ConcurrentXpathEngine);
+    }
+
+    public void testRejectsMissingCache() {
+        try {
+            new ConcurrentXpathEngine(null);
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public test_ConcurrentXpathEngine(String name) {
+        super(name);
+    }
+}
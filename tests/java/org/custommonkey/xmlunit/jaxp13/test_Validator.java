@@ -37,9 +37,14 @@ POSSIBILITY OF SUCH DAMAGE.
 package org.custommonkey.xmlunit.jaxp13;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.xml.transform.stream.StreamSource;
 
 import junit.framework.TestCase;
@@ -224,6 +229,140 @@ public class test_Validator extends TestCase {
         assertTrue(l.size() > 0);
     }
 
+    public void testSchemaIsCompiledOnce() throws Exception {
+        Validator v = new Validator();
+        v.setSchemaCache(null);
+        // a stream can only be read once
+        v.addSchemaSource(new StreamSource(new FileInputStream(
+                              test_Constants.BASEDIR + "/tests/etc/Book.xsd")));
+        for (int i = 0; i < 2; i++) {
+            StreamSource s =
+                new StreamSource(new File(test_Constants.BASEDIR
+                                          + "/tests/etc/BookXsdGenerated.xml"));
+            assertTrue(v.isInstanceValid(s));
+        }
+    }
+
+    public void testSchemaIsSharedByValidators() throws Exception {
+        SchemaCache cache = new SchemaCache(2);
+        for (int i = 0; i < 2; i++) {
+            Validator v = new Validator();
+            v.setSchemaCache(cache);
+            v.addSchemaSource(new StreamSource(new File(test_Constants.BASEDIR 
+                                                        + "/tests/etc/Book.xsd")));
+            StreamSource s =
+                new StreamSource(new File(test_Constants.BASEDIR
+                                          + "/tests/etc/invalidBook.xml"));
+            assertFalse(v.isInstanceValid(s));
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testSchemaWithStreamSourceIsNotShared() throws Exception {
+        SchemaCache cache = new SchemaCache(2);
+        Validator v = new Validator();
+        v.setSchemaCache(cache);
+        v.addSchemaSource(new StreamSource(new FileInputStream(
+                              test_Constants.BASEDIR + "/tests/etc/Book.xsd")));
+        StreamSource s =
+            new StreamSource(new File(test_Constants.BASEDIR
+                                      + "/tests/etc/BookXsdGenerated.xml"));
+        assertTrue(v.isInstanceValid(s));
+        assertEquals(0, cache.size());
+    }
+
+    public void testAddingSourceRecompilesSchema() throws Exception {
+        SchemaCache cache = new SchemaCache(2);
+        Validator v = new Validator();
+        v.setSchemaCache(cache);
+        v.addSchemaSource(new StreamSource(new File(test_Constants.BASEDIR 
+                                                    + "/tests/etc/Book.xsd")));
+        StreamSource s =
+            new StreamSource(new File(test_Constants.BASEDIR
+                                      + "/tests/etc/BookXsdGenerated.xml"));
+        assertTrue(v.isInstanceValid(s));
+        assertTrue(v.isInstanceValid(s));
+        assertEquals(1, cache.getMisses());
+        v.addSchemaSource(new StreamSource(new File(test_Constants.BASEDIR 
+                                                    + "/tests/etc/Book.xsd2")));
+        v.isInstanceValid(s);
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    public void testManyInstances() throws Exception {
+        Validator v = bookValidator();
+        List results = v.getInstanceErrors(instances(20), null);
+        assertEquals(20, results.size());
+        assertBookResults(results);
+    }
+
+    public void testManyInstancesInParallel() throws Exception {
+        Validator v = bookValidator();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List results = v.getInstanceErrors(instances(100), executor);
+            assertEquals(100, results.size());
+            assertBookResults(results);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testMaxErrorsPerInstance() throws Exception {
+        String instance = "<Book xmlns=\"http://www.publishing.org\">"
+            + "<Title a=\"1\">x</Title><Author b=\"1\">x</Author>"
+            + "<Date c=\"1\">x</Date><ISBN>x</ISBN><Publisher>x</Publisher>"
+            + "</Book>";
+        Validator v = bookValidator();
+        assertEquals(3, v.getInstanceErrors(new StreamSource(
+                         new StringReader(instance))).size());
+        v.setMaxErrorsPerInstance(2);
+        assertEquals(2, v.getInstanceErrors(new StreamSource(
+                         new StringReader(instance))).size());
+    }
+
+    public void testFailFast() throws Exception {
+        Validator v = bookValidator();
+        v.setFailFast(true);
+        List results = v.getInstanceErrors(instances(4), null);
+        assertEquals(4, results.size());
+        assertEquals(0, ((List) results.get(0)).size());
+        assertEquals(1, ((List) results.get(1)).size());
+        assertNull(results.get(2));
+        assertNull(results.get(3));
+    }
+
+    private static Validator bookValidator() {
+        Validator v = new Validator();
+        v.addSchemaSource(new StreamSource(new File(test_Constants.BASEDIR 
+                                                    + "/tests/etc/Book.xsd")));
+        return v;
+    }
+
+    /**
+     * Alternating valid and invalid instances.
+     */
+    private static List instances(int count) {
+        List l = new ArrayList();
+        for (int i = 0; i < count; i++) {
+            l.add(new StreamSource(new File(test_Constants.BASEDIR
+                                            + (i % 2 == 0
+                                               ? "/tests/etc/BookXsdGenerated.xml"
+                                               : "/tests/etc/invalidBook.xml"))));
+        }
+        return l;
+    }
+
+    private static void assertBookResults(List results) {
+        for (int i = 0; i < results.size(); i++) {
+            List errors = (List) results.get(i);
+            assertEquals(i % 2 == 0, errors.isEmpty());
+        }
+    }
+
     /**
      * fails even using the setup in XtestGoodRelaxNGSchemaIsValid()
      * since a SAXParser is trying to read the compact syntax
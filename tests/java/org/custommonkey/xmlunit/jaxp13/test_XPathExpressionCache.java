@@ -0,0 +1,164 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit.jaxp13;
+
+import org.custommonkey.xmlunit.SimpleNamespaceContext;
+import org.custommonkey.xmlunit.XMLUnit;
+
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+
+/**
+ * JUnit test for XPathExpressionCache
+ */
+public class test_XPathExpressionCache extends TestCase {
+
+    private static final String FOO = "<foo xmlns='urn:x'>"
+        + "<bar>1</bar><bar>2</bar></foo>";
+
+    private Document doc;
+
+    public void setUp() throws Exception {
+        doc = XMLUnit.buildControlDocument(FOO);
+    }
+
+    public void testCountsHitsAndMisses() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(10);
+        Jaxp13XpathEngine engine = new Jaxp13XpathEngine(cache);
+        assertEquals("2", engine.evaluate("count(/*/*)", doc));
+        assertEquals("2", engine.evaluate("count(/*/*)", doc));
+        assertEquals(1, engine.getMatchingNodes("/*", doc).getLength());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+        cache.clear();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(2);
+        Jaxp13XpathEngine engine = new Jaxp13XpathEngine(cache);
+        engine.evaluate("1", doc);
+        engine.evaluate("2", doc);
+        engine.evaluate("1", doc);
+        engine.evaluate("3", doc);
+        assertEquals(2, cache.size());
+        engine.evaluate("1", doc);
+        assertEquals(2, cache.getHits());
+        engine.evaluate("2", doc);
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    public void testNamespaceContextIsPartOfTheKey() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(10);
+        Jaxp13XpathEngine engine = new Jaxp13XpathEngine(cache);
+        assertEquals("", engine.evaluate("/x:foo/x:bar", doc));
+
+        HashMap m = new HashMap();
+        m.put("x", "urn:x");
+        engine = new Jaxp13XpathEngine(cache);
+        engine.setNamespaceContext(new SimpleNamespaceContext(m));
+        assertEquals("1", engine.evaluate("/x:foo/x:bar", doc));
+        assertEquals(0, cache.getHits());
+
+        engine = new Jaxp13XpathEngine(cache);
+        engine.setNamespaceContext(new SimpleNamespaceContext(m));
+        assertEquals("1", engine.evaluate("/x:foo/x:bar", doc));
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testConcurrentUse() throws Exception {
+        final XPathExpressionCache cache = new XPathExpressionCache(3);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            // DOM implementations aren't thread-safe,
+                            // each thread uses a document of its own
+                            Document d = XMLUnit.buildControlDocument(FOO);
+                            Jaxp13XpathEngine engine =
+                                new Jaxp13XpathEngine(cache);
+                            for (int j = 0; j < 200; j++) {
+                                assertEquals(String.valueOf(j % 5),
+                                             engine.evaluate(String
+                                                             .valueOf(j % 5),
+                                                             d));
+                                assertEquals(2, engine
+                                             .getMatchingNodes("/*/*", d)
+                                             .getLength());
+                            }
+                        } catch (Throwable t) {
+                            synchronized (failure) {
+                                failure[0] = t;
+                            }
+                        }
+                    }
+                };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        if (failure[0] != null) {
+            fail(failure[0].toString());
+        }
+        assertEquals(3, cache.size());
+        assertEquals(threads.length * 400,
+                     cache.getHits() + cache.getMisses());
+    }
+
+    public void testRejectsInvalidSize() {
+        try {
+            new XPathExpressionCache(0);
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public test_XPathExpressionCache(String name) {
+        super(name);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+
+import junit.framework.TestCase;
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.w3c.dom.Document;
+
+/**
+ * Tests for BatchTransform
+ */
+public class test_BatchTransform extends TestCase {
+    private static final String STYLESHEET = test_Constants.XSLT_START
+        + "<xsl:param name=\"suffix\"/>"
+        + "<xsl:template match=\"/\">"
+        + "<xsl:element name=\"{concat(name(*), $suffix)}\"/>"
+        + "</xsl:template>"
+        + test_Constants.XSLT_END;
+
+    private BatchTransform batch;
+
+    public void setUp() {
+        batch = new BatchTransform(STYLESHEET);
+        batch.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+    }
+
+    public void testResultStrings() {
+        assertResults(batch.getResultStrings(inputs(20)), 20);
+    }
+
+    public void testResultStringsInParallel() {
+        batch.setThreads(4);
+        assertResults(batch.getResultStrings(inputs(200)), 200);
+    }
+
+    public void testResultDocuments() {
+        batch.setThreads(3);
+        Iterator results = batch.getResultDocuments(inputs(10));
+        for (int i = 0; i < 10; i++) {
+            Document d = (Document) results.next();
+            assertEquals("e" + i, d.getDocumentElement().getTagName());
+        }
+        assertFalse(results.hasNext());
+    }
+
+    public void testParameter() {
+        batch.setParameter("suffix", "x");
+        Iterator results = batch.getResultStrings(inputs(1));
+        assertEquals("<e0x/>", results.next());
+    }
+
+    public void testParameterIsKeptForAllInputs() {
+        batch.setThreads(2);
+        batch.setParameter("suffix", "x");
+        Iterator results = batch.getResultStrings(inputs(20));
+        for (int i = 0; i < 20; i++) {
+            assertEquals("<e" + i + "x/>", results.next());
+        }
+        assertFalse(results.hasNext());
+    }
+
+    public void testFailedInputDoesntStopBatch() {
+        batch.setThreads(2);
+        List inputs = new ArrayList();
+        inputs.add(source("<e0/>"));
+        inputs.add(source("<e1>"));
+        inputs.add(source("<e2/>"));
+        Iterator results = batch.getResultStrings(inputs.iterator());
+        assertEquals("<e0/>", results.next());
+        try {
+            results.next();
+            fail("expected an exception for malformed input");
+        } catch (XMLUnitRuntimeException ex) {
+            // expected
+        }
+        assertEquals("<e2/>", results.next());
+        assertFalse(results.hasNext());
+    }
+
+    public void testCancel() {
+        batch.setThreads(2);
+        BatchTransform.Results results = batch.getResultStrings(inputs(100));
+        assertEquals("<e0/>", results.next());
+        results.cancel();
+        assertFalse(results.hasNext());
+    }
+
+    public void testWorkersOfAbandonedResultsEnd() throws Exception {
+        batch.setThreads(2);
+        batch.setWorkerIdleTimeout(50);
+        BatchTransform.Results results = batch.getResultStrings(inputs(100));
+        assertEquals("<e0/>", results.next());
+        for (int i = 0; i < 100 && results.hasLiveWorkers(); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(results.hasLiveWorkers());
+
+        // resuming still provides all results
+        for (int i = 1; i < 100; i++) {
+            assertEquals("<e" + i + "/>", results.next());
+        }
+        assertFalse(results.hasNext());
+    }
+
+    private static void assertResults(Iterator results, int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(results.hasNext());
+            assertEquals("<e" + i + "/>", results.next());
+        }
+        assertFalse(results.hasNext());
+    }
+
+    private static Iterator inputs(int count) {
+        List inputs = new ArrayList();
+        for (int i = 0; i < count; i++) {
+            inputs.add(source("<e" + i + "/>"));
+        }
+        return inputs.iterator();
+    }
+
+    private static Source source(String xml) {
+        return new StreamSource(new StringReader(xml));
+    }
+
+    public test_BatchTransform(String name) {
+        super(name);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.w3c.dom.Node;
+
+/**
+ * JUnit testcase for ComparisonSettings
+ */
+public class test_ComparisonSettings extends TestCase {
+
+    public void testDefaultsMatchXMLUnitDefaults() {
+        ComparisonSettings settings = new ComparisonSettings();
+        ComparisonSettings global = XMLUnit.getComparisonSettings();
+        assertEquals(global.getIgnoreWhitespace(),
+                     settings.getIgnoreWhitespace());
+        assertEquals(global.getIgnoreComments(),
+                     settings.getIgnoreComments());
+        assertEquals(global.getNormalize(), settings.getNormalize());
+        assertEquals(global.getNormalizeWhitespace(),
+                     settings.getNormalizeWhitespace());
+        assertEquals(global.getIgnoreDiffBetweenTextAndCDATA(),
+                     settings.getIgnoreDiffBetweenTextAndCDATA());
+        assertEquals(global.getIgnoreAttributeOrder(),
+                     settings.getIgnoreAttributeOrder());
+        assertEquals(global.getCompareUnmatched(),
+                     settings.getCompareUnmatched());
+        assertEquals(global.getSkipIdenticalSubtrees(),
+                     settings.getSkipIdenticalSubtrees());
+        assertEquals(global.getIterativeComparison(),
+                     settings.getIterativeComparison());
+        assertEquals(global.getComparisonThreads(),
+                     settings.getComparisonThreads());
+        assertEquals(global.getModifyDocumentsInPlace(),
+                     settings.getModifyDocumentsInPlace());
+    }
+
+    public void testWithCreatesModifiedCopy() {
+        ComparisonSettings settings = new ComparisonSettings();
+        ComparisonSettings modified = settings.withIgnoreComments(true)
+            .withCompareUnmatched(false).withComparisonThreads(3);
+        assertFalse(settings.getIgnoreComments());
+        assertTrue(settings.getCompareUnmatched());
+        assertEquals(1, settings.getComparisonThreads());
+        assertTrue(modified.getIgnoreComments());
+        assertFalse(modified.getCompareUnmatched());
+        assertEquals(3, modified.getComparisonThreads());
+        assertFalse(modified.getIgnoreWhitespace());
+    }
+
+    public void testSnapshotOfXMLUnit() {
+        try {
+            XMLUnit.setIgnoreWhitespace(true);
+            ComparisonSettings snapshot = XMLUnit.getComparisonSettings();
+            XMLUnit.setIgnoreWhitespace(false);
+            assertTrue(snapshot.getIgnoreWhitespace());
+        } finally {
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    public void testDiffUsesExplicitSettings() throws Exception {
+        String control = "<a> <!-- x --><b/></a>";
+        String test = "<a><b/></a>";
+        assertFalse(new Diff(control, test).similar());
+        ComparisonSettings settings = new ComparisonSettings()
+            .withIgnoreWhitespace(true).withIgnoreComments(true);
+        assertTrue(new Diff(control, test, settings).identical());
+        try {
+            XMLUnit.setIgnoreComments(true);
+            XMLUnit.setIgnoreWhitespace(true);
+            assertFalse(new Diff(control, test, new ComparisonSettings())
+                        .similar());
+        } finally {
+            XMLUnit.setIgnoreComments(false);
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    public void testDifferenceEngineUsesExplicitSettings() throws Exception {
+        ComparisonSettings settings = new ComparisonSettings()
+            .withNormalizeWhitespace(true);
+        final boolean[] different = new boolean[1];
+        DifferenceListener listener = new DifferenceListener() {
+                public int differenceFound(Difference difference) {
+                    different[0] = true;
+                    return RETURN_ACCEPT_DIFFERENCE;
+                }
+                public void skippedComparison(Node control, Node test) {
+                }
+            };
+        DifferenceEngine engine =
+            new DifferenceEngine(new ComparisonController() {
+                    public boolean haltComparison(Difference d) {
+                        return false;
+                    }
+                }, null, settings);
+        engine.compare(XMLUnit.buildControlDocument("<a>x  y</a>"),
+                       XMLUnit.buildTestDocument("<a>x y</a>"),
+                       listener, null);
+        assertFalse(different[0]);
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(test_ComparisonSettings.class);
+    }
+
+    public test_ComparisonSettings(String name) {
+        super(name);
+    }
+}
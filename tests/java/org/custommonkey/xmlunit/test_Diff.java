@@ -653,8 +653,7 @@ public class test_Diff extends TestCase{
         assertFalse(buildDiff(control, test).similar());
     }
 
-    // fails with Java 5 and later
-    public void XtestWhitespaceHandlingDoesntAffectNormalization()
+    public void testWhitespaceHandlingDoesntAffectNormalization()
         throws Exception {
         try {
             XMLUnit.setIgnoreWhitespace(true);
@@ -675,6 +674,140 @@ public class test_Diff extends TestCase{
         }
     }
 
+    public void testCommentHandlingMergesAdjacentText() throws Exception {
+        String xml1 = "<foo>a<!-- test -->b</foo>";
+        String xml2 = "<foo>ab</foo>";
+        try {
+            assertFalse(buildDiff(xml1, xml2).similar());
+            XMLUnit.setIgnoreComments(true);
+            assertTrue(buildDiff(xml1, xml2).identical());
+        } finally {
+            XMLUnit.setIgnoreComments(false);
+        }
+    }
+
+    public void testDocumentsAreCopiedBeforeStrippingComments()
+        throws Exception {
+        Document control = XMLUnit.buildControlDocument("<foo><!-- c --></foo>");
+        Document test = XMLUnit.buildTestDocument("<foo/>");
+        try {
+            XMLUnit.setIgnoreComments(true);
+            assertTrue(buildDiff(control, test).identical());
+            assertTrue(control.getDocumentElement().hasChildNodes());
+        } finally {
+            XMLUnit.setIgnoreComments(false);
+        }
+    }
+
+    public void testIgnoringWhitespaceAndCommentsComparesOriginals()
+        throws Exception {
+        Document control =
+            XMLUnit.buildControlDocument("<foo> <!-- c --> <bar/>\n</foo>");
+        Document test = XMLUnit.buildTestDocument("<foo><bar/></foo>");
+        try {
+            XMLUnit.setIgnoreComments(true);
+            XMLUnit.setIgnoreWhitespace(true);
+            Diff diff = buildDiff(control, test);
+            Set controlDocuments = new HashSet();
+            diff.overrideMatchTracker(new OwnerDocumentCollector(
+                                          controlDocuments));
+            assertTrue(diff.identical());
+            assertEquals(1, controlDocuments.size());
+            assertTrue(controlDocuments.contains(control));
+            assertEquals(5, control.getDocumentElement().getChildNodes()
+                         .getLength());
+        } finally {
+            XMLUnit.setIgnoreComments(false);
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    public void testDocumentsAreCopiedIfQualifierLooksAtText()
+        throws Exception {
+        Document control = XMLUnit.buildControlDocument("<foo> <bar/> </foo>");
+        Document test = XMLUnit.buildTestDocument("<foo><bar/></foo>");
+        try {
+            XMLUnit.setIgnoreWhitespace(true);
+            Diff diff = buildDiff(control, test);
+            diff.overrideElementQualifier(new ElementNameAndTextQualifier());
+            Set controlDocuments = new HashSet();
+            diff.overrideMatchTracker(new OwnerDocumentCollector(
+                                          controlDocuments));
+            assertTrue(diff.identical());
+            assertFalse(controlDocuments.contains(control));
+            assertEquals(3, control.getDocumentElement().getChildNodes()
+                         .getLength());
+        } finally {
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    public void testDocumentsAreCopiedWhenDiffIsConstructed()
+        throws Exception {
+        Document control =
+            XMLUnit.buildControlDocument("<foo> <bar/> </foo>");
+        Document test = XMLUnit.buildTestDocument("<foo><bar/></foo>");
+        try {
+            XMLUnit.setIgnoreWhitespace(true);
+            Diff diff = new Diff(control, test, null,
+                                 new ElementNameAndTextQualifier());
+            control.getDocumentElement().appendChild(control
+                                                     .createElement("baz"));
+            assertTrue(diff.identical());
+        } finally {
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    public void testDocumentsAreCopiedWhenQualifierIsOverridden()
+        throws Exception {
+        Document control =
+            XMLUnit.buildControlDocument("<foo> <bar/> </foo>");
+        Document test = XMLUnit.buildTestDocument("<foo><bar/></foo>");
+        try {
+            XMLUnit.setIgnoreWhitespace(true);
+            Diff diff = buildDiff(control, test);
+            diff.overrideElementQualifier(new ElementNameAndTextQualifier());
+            control.getDocumentElement().appendChild(control
+                                                     .createElement("baz"));
+            assertTrue(diff.identical());
+        } finally {
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    public void testOriginalsAreReadWhenComparisonRuns() throws Exception {
+        Document control =
+            XMLUnit.buildControlDocument("<foo> <bar/> </foo>");
+        Document test = XMLUnit.buildTestDocument("<foo><bar/></foo>");
+        try {
+            XMLUnit.setIgnoreWhitespace(true);
+            Diff diff = buildDiff(control, test);
+            control.getDocumentElement().appendChild(control
+                                                     .createElement("baz"));
+            assertFalse(diff.similar());
+        } finally {
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    public void testModifyDocumentsInPlace() throws Exception {
+        Document control = XMLUnit.buildControlDocument("<foo><!-- c --> <bar/></foo>");
+        Document test = XMLUnit.buildTestDocument("<foo><bar/></foo>");
+        try {
+            XMLUnit.setIgnoreComments(true);
+            XMLUnit.setIgnoreWhitespace(true);
+            XMLUnit.setModifyDocumentsInPlace(true);
+            assertTrue(buildDiff(control, test).identical());
+            assertEquals(1, control.getDocumentElement().getChildNodes()
+                         .getLength());
+        } finally {
+            XMLUnit.setIgnoreComments(false);
+            XMLUnit.setIgnoreWhitespace(false);
+            XMLUnit.setModifyDocumentsInPlace(false);
+        }
+    }
+
     public void testNormalizedWhitespace() throws Exception {
         String xml1 = "<foo>a = b;</foo>";
         String xml2 = "<foo>\r\n\ta =\tb; \r\n</foo>";
@@ -987,5 +1120,17 @@ public class test_Diff extends TestCase{
         Diff diff = new Diff(control, test);
         assertFalse(diff.toString(), diff.similar());
     }
-}
 
+    private static class OwnerDocumentCollector implements MatchTracker {
+        private final Set documents;
+        private OwnerDocumentCollector(Set documents) {
+            this.documents = documents;
+        }
+        public void matchFound(Difference d) {
+            Node n = d.getControlNodeDetail().getNode();
+            if (n != null && n.getNodeType() != Node.DOCUMENT_NODE) {
+                documents.add(n.getOwnerDocument());
+            }
+        }
+    }
+}
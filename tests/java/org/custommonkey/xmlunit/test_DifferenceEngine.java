@@ -41,6 +41,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import junit.framework.TestCase;
@@ -488,6 +489,282 @@ public class test_DifferenceEngine extends TestCase implements DifferenceConstan
         assertDifferentChildren(test, control, CHILD_NODELIST_SEQUENCE, false);
     }
 
+    public void testCompareNodeListRepeatedElementNames() throws Exception {
+        Element control = document.createElement("root");
+        control.appendChild(document.createElement("a"));
+        control.appendChild(document.createElement("b"));
+        control.appendChild(document.createElement("a"));
+
+        Element test = document.createElement("root");
+        test.appendChild(document.createElement("b"));
+        test.appendChild(document.createElement("a"));
+        test.appendChild(document.createElement("a"));
+
+        final ArrayList sequences = new ArrayList();
+        engine = new DifferenceEngine(PSEUDO_DETAILED_DIFF);
+        engine.compare(control, test, new DifferenceListener() {
+                public int differenceFound(Difference d) {
+                    assertFalse(d.toString(),
+                                d.getId() == CHILD_NODE_NOT_FOUND_ID);
+                    if (d.getId() == CHILD_NODELIST_SEQUENCE_ID) {
+                        sequences.add(d.getControlNodeDetail().getValue()
+                                      + "->"
+                                      + d.getTestNodeDetail().getValue());
+                    }
+                    return RETURN_ACCEPT_DIFFERENCE;
+                }
+                public void skippedComparison(Node c, Node t) {
+                    fail("skipped");
+                }
+            }, DEFAULT_ELEMENT_QUALIFIER);
+        assertEquals(2, sequences.size());
+        assertEquals("0->1", sequences.get(0));
+        assertEquals("1->0", sequences.get(1));
+    }
+
+    public void testCompareNodeListManySiblings() throws Exception {
+        Element control = document.createElement("root");
+        Element test = document.createElement("root");
+        final int count = 500;
+        for (int i = 0; i < count; i++) {
+            control.appendChild(document.createElement("e" + i));
+            test.appendChild(document.createElement("e" + (count - 1 - i)));
+        }
+
+        final int[] sequences = new int[1];
+        engine = new DifferenceEngine(PSEUDO_DETAILED_DIFF);
+        engine.compare(control, test, new DifferenceListener() {
+                public int differenceFound(Difference d) {
+                    assertEquals(d.toString(), CHILD_NODELIST_SEQUENCE_ID,
+                                 d.getId());
+                    sequences[0]++;
+                    return RETURN_ACCEPT_DIFFERENCE;
+                }
+                public void skippedComparison(Node c, Node t) {
+                    fail("skipped");
+                }
+            }, DEFAULT_ELEMENT_QUALIFIER);
+        assertEquals(count, sequences[0]);
+    }
+
+    public void testSkipIdenticalSubtrees() throws Exception {
+        String xml = "<root><a><b/><b>text</b></a><c x=\"1\"/></root>";
+        final int[] qualified = new int[1];
+        ElementQualifier countingQualifier = new ElementQualifier() {
+                public boolean qualifyForComparison(Element control,
+                                                    Element test) {
+                    qualified[0]++;
+                    return DEFAULT_ELEMENT_QUALIFIER
+                        .qualifyForComparison(control, test);
+                }
+            };
+        try {
+            XMLUnit.setSkipIdenticalSubtrees(true);
+            engine.compare(XMLUnit.buildControlDocument(xml),
+                           XMLUnit.buildTestDocument(xml),
+                           listener, countingQualifier);
+            assertEquals(0, qualified[0]);
+            assertEquals(-1, listener.comparingWhat);
+
+            XMLUnit.setSkipIdenticalSubtrees(false);
+            engine.compare(XMLUnit.buildControlDocument(xml),
+                           XMLUnit.buildTestDocument(xml),
+                           listener, countingQualifier);
+            assertTrue(qualified[0] > 0);
+            assertEquals(-1, listener.comparingWhat);
+        } finally {
+            XMLUnit.setSkipIdenticalSubtrees(false);
+        }
+    }
+
+    public void testSkipIdenticalSubtreesKeepsXpathLocations()
+        throws Exception {
+        try {
+            XMLUnit.setSkipIdenticalSubtrees(true);
+            listenToDifferences("<root><a><x/></a><a><y/></a></root>",
+                                "<root><a><x/></a><a><z/></a></root>");
+            assertEquals(ELEMENT_TAG_NAME_ID, listener.comparingWhat);
+            assertEquals("/root[1]/a[2]/y[1]", listener.controlXpath);
+            assertEquals("/root[1]/a[2]/z[1]", listener.testXpath);
+        } finally {
+            XMLUnit.setSkipIdenticalSubtrees(false);
+        }
+    }
+
+    public void testIterativeComparisonOfDeeplyNestedDocuments()
+        throws Exception {
+        final int depth = 20000;
+        StringBuffer control = new StringBuffer();
+        StringBuffer test = new StringBuffer();
+        for (int i = 0; i < depth; i++) {
+            control.append("<a>");
+            test.append("<a>");
+        }
+        control.append("x");
+        test.append("y");
+        for (int i = 0; i < depth; i++) {
+            control.append("</a>");
+            test.append("</a>");
+        }
+        try {
+            XMLUnit.setIterativeComparison(true);
+            listenToDifferences(control.toString(), test.toString());
+            assertEquals(TEXT_VALUE_ID, listener.comparingWhat);
+            assertEquals("x", listener.expected);
+            assertEquals("y", listener.actual);
+            assertTrue(listener.controlXpath.endsWith("/a[1]/text()[1]"));
+        } finally {
+            XMLUnit.setIterativeComparison(false);
+        }
+    }
+
+    public void testIterativeComparisonReportsSameDifferences()
+        throws Exception {
+        String control = "<!-- c --><root xmlns:p='urn:x'><a x='1'>text</a>"
+            + "<b><c/><d>1</d><p:e/></b><?pi data?><f><g/></f><b/></root>";
+        String test = "<!-- c --><root xmlns:p='urn:x'><b><d>2</d><c/></b>"
+            + "<a x='2' y='1'>text<![CDATA[more]]></a><p:e/><f/><h/></root>";
+        List recursive = collectAllDifferences(control, test);
+        List iterative;
+        try {
+            XMLUnit.setIterativeComparison(true);
+            iterative = collectAllDifferences(control, test);
+        } finally {
+            XMLUnit.setIterativeComparison(false);
+        }
+        assertTrue(recursive.size() > 5);
+        assertEquals(recursive, iterative);
+    }
+
+    public void testParallelComparisonReportsSameDifferences()
+        throws Exception {
+        StringBuffer control = new StringBuffer("<catalog>");
+        StringBuffer test = new StringBuffer("<catalog>");
+        for (int i = 0; i < 50; i++) {
+            control.append("<item id='").append(i).append("'><name>n")
+                .append(i).append("</name><price>").append(i)
+                .append("</price><tags><a/><b/></tags></item>");
+            test.append("<item id='").append(i).append("'><name>n")
+                .append(i).append("</name><price>")
+                .append(i % 7 == 0 ? i + 1 : i)
+                .append("</price><tags>").append(i % 5 == 0 ? "<b/><a/>" : "<a/><b/>")
+                .append("</tags></item>");
+        }
+        control.append("<trailer/></catalog>");
+        test.append("<extra/></catalog>");
+        List sequential = collectAllDifferences(control.toString(),
+                                                test.toString());
+        List parallel;
+        try {
+            XMLUnit.setComparisonThreads(4);
+            parallel = collectAllDifferences(control.toString(),
+                                             test.toString());
+        } finally {
+            XMLUnit.setComparisonThreads(1);
+        }
+        assertTrue(sequential.size() > 20);
+        assertEquals(sequential, parallel);
+    }
+
+    public void testOnlyBuiltInQualifiersAllowParallelComparison() {
+        assertTrue(engine.canCompareInParallel(null));
+        assertTrue(engine.canCompareInParallel(new ElementNameQualifier()));
+        assertTrue(engine.canCompareInParallel(
+            new ElementNameAndAttributeQualifier("id")));
+        assertFalse(engine.canCompareInParallel(
+            new ElementNameAndTextQualifier()));
+        assertFalse(engine.canCompareInParallel(
+            new ElementNameQualifier() { }));
+    }
+
+    public void testCustomQualifierIsOnlyCalledByComparingThread()
+        throws Exception {
+        StringBuffer control = new StringBuffer("<catalog>");
+        StringBuffer test = new StringBuffer("<catalog>");
+        for (int i = 0; i < 50; i++) {
+            control.append("<item><name>n").append(i).append("</name></item>");
+            test.append("<item><name>n").append(i % 7 == 0 ? -i : i)
+                .append("</name></item>");
+        }
+        control.append("</catalog>");
+        test.append("</catalog>");
+        List sequential = collectAllDifferences(control.toString(),
+                                                test.toString());
+        final List otherThreads = new ArrayList();
+        final Thread main = Thread.currentThread();
+        ElementQualifier recordingQualifier = new ElementNameQualifier() {
+                public boolean qualifyForComparison(Element control,
+                                                    Element test) {
+                    if (Thread.currentThread() != main) {
+                        synchronized (otherThreads) {
+                            otherThreads.add(Thread.currentThread());
+                        }
+                    }
+                    return super.qualifyForComparison(control, test);
+                }
+            };
+        List withCustomQualifier;
+        try {
+            XMLUnit.setComparisonThreads(4);
+            withCustomQualifier = collectAllDifferences(control.toString(),
+                                                        test.toString(),
+                                                        recordingQualifier);
+        } finally {
+            XMLUnit.setComparisonThreads(1);
+        }
+        assertTrue(otherThreads.isEmpty());
+        assertEquals(sequential, withCustomQualifier);
+    }
+
+    public void testParallelComparisonHaltsAtFirstDifference()
+        throws Exception {
+        StringBuffer control = new StringBuffer("<catalog>");
+        StringBuffer test = new StringBuffer("<catalog>");
+        for (int i = 0; i < 50; i++) {
+            control.append("<item><name>n").append(i).append("</name></item>");
+            test.append("<item><name>n").append(i < 10 ? i : -i)
+                .append("</name></item>");
+        }
+        control.append("</catalog>");
+        test.append("</catalog>");
+        try {
+            XMLUnit.setComparisonThreads(4);
+            listenToDifferences(control.toString(), test.toString());
+        } finally {
+            XMLUnit.setComparisonThreads(1);
+        }
+        assertEquals(TEXT_VALUE_ID, listener.comparingWhat);
+        assertEquals("n10", listener.expected);
+        assertEquals("/catalog[1]/item[11]/name[1]/text()[1]",
+                     listener.controlXpath);
+    }
+
+    private List collectAllDifferences(String control, String test)
+        throws Exception {
+        return collectAllDifferences(control, test,
+                                     DEFAULT_ELEMENT_QUALIFIER);
+    }
+
+    private List collectAllDifferences(String control, String test,
+                                       ElementQualifier qualifier)
+        throws Exception {
+        final List differences = new ArrayList();
+        DifferenceListener collector = new DifferenceListener() {
+                public int differenceFound(Difference difference) {
+                    differences.add(difference.toString());
+                    return RETURN_ACCEPT_DIFFERENCE;
+                }
+                public void skippedComparison(Node control, Node test) {
+                    differences.add("skipped " + control + " " + test);
+                }
+            };
+        new DifferenceEngine(PSEUDO_DETAILED_DIFF)
+            .compare(XMLUnit.buildControlDocument(control),
+                     XMLUnit.buildTestDocument(test), collector,
+                     qualifier);
+        return differences;
+    }
+
     public void testBasicCompare() throws Exception {
         try {
             engine.compare("black", "white", null, null, listener,
@@ -879,6 +1156,32 @@ public class test_DifferenceEngine extends TestCase implements DifferenceConstan
         assertEquals(8, count[0]);
     }
 
+    public void testMatchTrackerReceivesNodeDetails() throws Exception {
+        Element control = document.createElement("foo");
+        Element test = document.createElement("foo");
+        final ArrayList matches = new ArrayList();
+        engine.setMatchTracker(new MatchTracker() {
+                public void matchFound(Difference d) {
+                    matches.add(d);
+                }
+            });
+        engine.compare(control, test, listener, null);
+        Difference tagName = null;
+        for (Iterator iter = matches.iterator(); iter.hasNext(); ) {
+            Difference d = (Difference) iter.next();
+            if (d.getId() == ELEMENT_TAG_NAME_ID) {
+                tagName = d;
+            }
+        }
+        assertNotNull(tagName);
+        assertEquals("foo", tagName.getControlNodeDetail().getValue());
+        assertEquals("/foo[1]",
+                     tagName.getControlNodeDetail().getXpathLocation());
+        assertEquals("/foo[1]",
+                     tagName.getTestNodeDetail().getXpathLocation());
+        assertFalse(listener.different);
+    }
+
     /**
      * @see http://sourceforge.net/forum/forum.php?thread_id=3284504&forum_id=73274
      */
@@ -966,6 +1269,36 @@ public class test_DifferenceEngine extends TestCase implements DifferenceConstan
                      listener.comparingWhat);
     }
 
+    public void testEqualPrimitivesArePassedToCompareObject()
+        throws Exception {
+        final List compared = new ArrayList();
+        engine = new DifferenceEngine(PSEUDO_DIFF) {
+                protected void compare(Object expected, Object actual,
+                                       Node control, Node test,
+                                       DifferenceListener listener,
+                                       Difference difference)
+                    throws DifferenceFoundException {
+                    compared.add(new Integer(difference.getId()));
+                    super.compare(expected, actual, control, test, listener,
+                                  difference);
+                }
+            };
+        listenToDifferences("<a b=\"1\"><c/></a>", "<a b=\"1\"><c/></a>");
+        assertFalse(listener.different);
+        int[] ids = new int[] {
+            DifferenceConstants.NODE_TYPE_ID,
+            DifferenceConstants.HAS_CHILD_NODES_ID,
+            DifferenceConstants.CHILD_NODELIST_LENGTH_ID,
+            DifferenceConstants.CHILD_NODELIST_SEQUENCE_ID,
+            DifferenceConstants.ELEMENT_NUM_ATTRIBUTES_ID,
+            DifferenceConstants.ATTR_VALUE_EXPLICITLY_SPECIFIED_ID
+        };
+        for (int i = 0; i < ids.length; i++) {
+            assertTrue(String.valueOf(ids[i]),
+                       compared.contains(new Integer(ids[i])));
+        }
+    }
+
     private void listenToDifferences(String control, String test)
         throws SAXException, IOException {
         Document controlDoc = XMLUnit.buildControlDocument(control);
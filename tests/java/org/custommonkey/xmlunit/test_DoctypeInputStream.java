@@ -36,6 +36,7 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.custommonkey.xmlunit;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -109,6 +110,33 @@ public class test_DoctypeInputStream extends AbstractDoctypeTests {
         assertEquals(source, dis.getContent("UTF-8"));
     }
 
+    public void testBulkReadPassesThroughContent() throws IOException {
+        StringBuffer body = new StringBuffer("<root>");
+        for (int i = 0; i < 5000; i++) {
+            body.append("<child attr=\"").append(i).append("\">\u00e4</child>");
+        }
+        body.append("</root>");
+        FileInputStream fis = testDocument(test_Constants.XML_DECLARATION
+                                           + "<!-- c -->"
+                                           + test_Constants.CHUCK_JONES_RIP_DTD_DECL
+                                           + body);
+        try {
+            DoctypeInputStream dis =
+                new DoctypeInputStream(fis, "ISO-8859-1", "ni", "shrubbery");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] b = new byte[7];
+            int numBytes;
+            while ((numBytes = dis.read(b, 0, b.length)) != -1) {
+                bytes.write(b, 0, numBytes);
+            }
+            assertEquals(test_Constants.XML_DECLARATION
+                         + "<!DOCTYPE ni SYSTEM \"shrubbery\"><!-- c -->"
+                         + body, bytes.toString("ISO-8859-1"));
+        } finally {
+            fis.close();
+        }
+    }
+
     public test_DoctypeInputStream(String name) {
         super(name);
     }
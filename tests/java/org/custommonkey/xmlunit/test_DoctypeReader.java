@@ -61,6 +61,34 @@ public class test_DoctypeReader extends AbstractDoctypeTests {
         assertEquals(source, doctypeReader.getContent());
     }
 
+    public void testGetContentNormalizesLineSeparators() throws IOException {
+        doctypeReader = new DoctypeReader(new StringReader("a\r\nb\rc\n\nd\n"),
+                                          "nonsense", "words");
+        assertEquals("a" + NEWLINE + "b" + NEWLINE + "c" + NEWLINE + NEWLINE
+                     + "d", doctypeReader.getContent());
+    }
+
+    public void testBulkReadPassesThroughContent() throws IOException {
+        StringBuffer body = new StringBuffer("<root>");
+        for (int i = 0; i < 5000; i++) {
+            body.append("<child attr=\"").append(i).append("\"/>");
+        }
+        body.append("</root>");
+        String source = test_Constants.XML_DECLARATION + "<!-- c -->"
+            + test_Constants.CHUCK_JONES_RIP_DTD_DECL + body;
+        doctypeReader = new DoctypeReader(new StringReader(source),
+                                          "ni", "shrubbery");
+        StringBuffer buf = new StringBuffer();
+        char[] ch = new char[7];
+        int numChars;
+        while ((numChars = doctypeReader.read(ch, 0, ch.length)) != -1) {
+            buf.append(ch, 0, numChars);
+        }
+        assertEquals(test_Constants.XML_DECLARATION
+                     + "<!DOCTYPE ni SYSTEM \"shrubbery\"><!-- c -->" + body,
+                     buf.toString());
+    }
+
     private void initDummyDoctypeReader() {
         sourceReader = new StringReader("yabba");
         doctypeReader = new DoctypeReader(sourceReader,
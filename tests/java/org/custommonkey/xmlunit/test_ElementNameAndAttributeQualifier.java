@@ -137,6 +137,36 @@ public class test_ElementNameAndAttributeQualifier extends TestCase {
                     elementNameAndAttributeQualifier.qualifyForComparison(control, test));
     }   
 
+    public void testMatchKey() throws Exception {
+        elementNameAndAttributeQualifier =
+            new ElementNameAndAttributeQualifier();
+        assertNull(elementNameAndAttributeQualifier
+                   .getMatchKey(document.createElement(TAG_NAME)));
+
+        elementNameAndAttributeQualifier =
+            new ElementNameAndAttributeQualifier("id");
+        Element control = document.createElement(TAG_NAME);
+        control.setAttribute("id", "1");
+        Element test = document.createElement(TAG_NAME);
+        test.setAttribute("id", "1");
+        test.setAttribute("uiop", "false");
+        assertEquals(elementNameAndAttributeQualifier.getMatchKey(control),
+                     elementNameAndAttributeQualifier.getMatchKey(test));
+
+        test.setAttribute("id", "2");
+        assertFalse(elementNameAndAttributeQualifier.getMatchKey(control)
+                    .equals(elementNameAndAttributeQualifier
+                            .getMatchKey(test)));
+
+        // a missing attribute is treated like an empty one
+        control = document.createElement(TAG_NAME);
+        test.setAttribute("id", "");
+        assertTrue(elementNameAndAttributeQualifier
+                   .qualifyForComparison(control, test));
+        assertEquals(elementNameAndAttributeQualifier.getMatchKey(control),
+                     elementNameAndAttributeQualifier.getMatchKey(test));
+    }
+
     public void testNamespacedQualifyingAttribute() throws Exception {
         final String attrName = "id";
         final String nsURI = "http://xmlunit.sourceforge.net/tests";
@@ -83,6 +83,25 @@ public class test_ElementNameAndTextQualifier extends TestCase {
         assertTrue("denormalised control text comparable to normalised test text",
                    elementNameAndTextQualifier.qualifyForComparison(control, test));
     }
+
+
+    public void testMatchKey() throws Exception {
+        Element control = document.createElement(TAG_NAME);
+        control.appendChild(document.createTextNode(TEXT_A));
+        control.appendChild(document.createTextNode(TEXT_B));
+
+        Element test = document.createElement(TAG_NAME);
+        test.appendChild(document.createTextNode(TEXT_A + TEXT_B));
+        assertEquals(elementNameAndTextQualifier.getMatchKey(control),
+                     elementNameAndTextQualifier.getMatchKey(test));
+
+        test = document.createElement(TAG_NAME);
+        assertFalse(elementNameAndTextQualifier.getMatchKey(control)
+                    .equals(elementNameAndTextQualifier.getMatchKey(test)));
+        assertEquals(elementNameAndTextQualifier.getMatchKey(test),
+                     elementNameAndTextQualifier
+                     .getMatchKey(document.createElement(TAG_NAME)));
+    }
         
     public void setUp() throws Exception {
         document = XMLUnit.newControlParser().newDocument();
@@ -92,7 +92,29 @@ public class test_ElementNameQualifier extends TestCase {
         assertFalse("qualified nameA not comparable to requalified-anotherURI nameB",
                     elementNameQualifier.qualifyForComparison(control, test));
     }
-                
+
+
+    public void testMatchKey() throws Exception {
+        String anURI = "gopher://example.com";
+        Element control = document.createElementNS(anURI, "qnq:" + NAME_A);
+        Element test = document.createElementNS(anURI, "pgp:" + NAME_A);
+        assertEquals(elementNameQualifier.getMatchKey(control),
+                     elementNameQualifier.getMatchKey(test));
+
+        test = document.createElement(NAME_A);
+        assertFalse(elementNameQualifier.getMatchKey(control)
+                    .equals(elementNameQualifier.getMatchKey(test)));
+    }
+
+    public void testNoMatchKeyForSubclasses() throws Exception {
+        ElementNameQualifier q = new ElementNameQualifier() {
+                public boolean qualifyForComparison(Element control,
+                                                    Element test) {
+                    return true;
+                }
+            };
+        assertNull(q.getMatchKey(document.createElement(NAME_A)));
+    }
                 
     public void setUp() throws Exception {
         document = XMLUnit.newControlParser().newDocument();
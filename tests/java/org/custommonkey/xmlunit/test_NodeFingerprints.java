@@ -0,0 +1,107 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.w3c.dom.Document;
+
+/**
+ * JUnit testcase for NodeFingerprints
+ */
+public class test_NodeFingerprints extends TestCase {
+
+    public void testIdenticalSubtrees() throws Exception {
+        assertTrue(identical(new ComparisonSettings(),
+                             "<a x='1' y='2'><b>t</b><!--c--></a>",
+                             "<a x='1' y='2'><b>t</b><!--c--></a>"));
+    }
+
+    public void testEqualityIsCheckedEvenIfFingerprintsCollide()
+        throws Exception {
+        ComparisonSettings settings = new ComparisonSettings();
+        assertFalse(equal(settings, "<a x='1'/>", "<a x='2'/>"));
+        assertFalse(equal(settings, "<a><b/></a>", "<a><b/><b/></a>"));
+        assertFalse(equal(settings, "<a><b>t</b></a>", "<a><c>t</c></a>"));
+        assertFalse(equal(settings, "<a>t</a>", "<a>u</a>"));
+        assertFalse(equal(settings, "<a>t</a>", "<a><![CDATA[t]]></a>"));
+    }
+
+    public void testEqualityHonoursSettings() throws Exception {
+        assertTrue(equal(new ComparisonSettings()
+                         .withIgnoreDiffBetweenTextAndCDATA(true),
+                         "<a>t</a>", "<a><![CDATA[t]]></a>"));
+        assertTrue(equal(new ComparisonSettings().withIgnoreComments(true),
+                         "<a><!--c--><b/></a>", "<a><b/></a>"));
+        assertTrue(equal(new ComparisonSettings().withIgnoreWhitespace(true),
+                         "<a> <b> t </b></a>", "<a><b>t</b></a>"));
+    }
+
+    private static boolean identical(ComparisonSettings settings,
+                                     String control, String test)
+        throws Exception {
+        Document c = XMLUnit.buildControlDocument(control);
+        Document t = XMLUnit.buildTestDocument(test);
+        NodeFingerprints cf = new NodeFingerprints(c, settings, false);
+        NodeFingerprints tf = new NodeFingerprints(t, settings, false);
+        return cf.identicalSubtrees(c.getDocumentElement(), tf,
+                                    t.getDocumentElement());
+    }
+
+    /**
+     * Only the check confirming equal fingerprints - as if the
+     * fingerprints had collided.
+     */
+    private static boolean equal(ComparisonSettings settings,
+                                 String control, String test)
+        throws Exception {
+        Document c = XMLUnit.buildControlDocument(control);
+        Document t = XMLUnit.buildTestDocument(test);
+        boolean skipWhitespace = settings.getIgnoreWhitespace();
+        return new NodeFingerprints(c, settings, skipWhitespace)
+            .equalSubtrees(c.getDocumentElement(), t.getDocumentElement());
+    }
+
+    public static TestSuite suite() {
+        return new TestSuite(test_NodeFingerprints.class);
+    }
+
+    public test_NodeFingerprints(String name) {
+        super(name);
+    }
+}
@@ -36,6 +36,7 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.custommonkey.xmlunit;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 
@@ -74,6 +75,34 @@ public class test_NodeInputStream extends TestCase {
         assertEquals(available - 1, nodeStream.available());
     }
 
+    public void testBulkReadMatchesSingleReads() throws Exception {
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        int b;
+        while ((b = nodeStream.read()) != -1) {
+            single.write(b);
+        }
+        nodeStream.close();
+
+        ByteArrayOutputStream bulk = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int count;
+        while ((count = nodeStream.read(buffer, 0, buffer.length)) != -1) {
+            bulk.write(buffer, 0, count);
+        }
+        assertTrue(single.size() > 0);
+        assertEquals(new String(single.toByteArray(), "UTF-8"),
+                     new String(bulk.toByteArray(), "UTF-8"));
+    }
+
+    public void testNonAsciiBytesAreNotNegative() throws Exception {
+        nodeStream = new NodeInputStream(XMLUnit.buildControlDocument(
+                                             "<frog>\u00e4</frog>"));
+        int b;
+        while ((b = nodeStream.read()) != -1) {
+            assertTrue("byte " + b, b >= 0 && b < 256);
+        }
+    }
+
     public test_NodeInputStream(String name) {
         super(name);
     }
@@ -36,7 +36,11 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.custommonkey.xmlunit;
 
+import java.io.StringReader;
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
 import org.w3c.dom.Node;
 
 /**
@@ -74,6 +78,45 @@ public class test_SimpleXpathEngine extends AbstractXpathEngineTests {
         super.testEvaluate();
     }
 
+    public void testStylesheetsAreCompiledOnce() throws Exception {
+        TemplatesCache cache = new TemplatesCache(2, null);
+        String xslt = XMLUnit.getXSLTStart() + "</xsl:stylesheet>";
+        assertSame(cache.getTemplates(xslt), cache.getTemplates(xslt));
+        assertEquals(1, cache.size());
+    }
+
+    public void testCacheIsBounded() throws Exception {
+        TemplatesCache cache = new TemplatesCache(2, null);
+        for (int i = 0; i < 3; i++) {
+            cache.getTemplates(XMLUnit.getXSLTStart() + "<!-- " + i + " -->"
+                               + "</xsl:stylesheet>");
+        }
+        assertEquals(2, cache.size());
+    }
+
+    public void testChangingURIResolverIsHonored() throws Exception {
+        try {
+            XMLUnit.setURIResolver(new ConstantURIResolver("<a>1</a>"));
+            assertEquals("1", simpleXpathEngine.evaluate("document('x:y')/a",
+                                                         testDocument));
+            XMLUnit.setURIResolver(new ConstantURIResolver("<a>2</a>"));
+            assertEquals("2", simpleXpathEngine.evaluate("document('x:y')/a",
+                                                         testDocument));
+        } finally {
+            XMLUnit.setURIResolver(null);
+        }
+    }
+
+    private static class ConstantURIResolver implements URIResolver {
+        private final String content;
+        private ConstantURIResolver(String content) {
+            this.content = content;
+        }
+        public Source resolve(String href, String base) {
+            return new StreamSource(new StringReader(content));
+        }
+    }
+
     public test_SimpleXpathEngine(String name) {
         super(name);
     }
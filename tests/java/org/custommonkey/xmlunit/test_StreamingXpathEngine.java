@@ -0,0 +1,157 @@
+/*
+******************************************************************
+Copyright (c) 2026, Jeff Martin, Tim Bacon
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+    * Neither the name of the xmlunit.sourceforge.net nor the names
+      of its contributors may be used to endorse or promote products
+      derived from this software without specific prior written
+      permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************
+*/
+
+package org.custommonkey.xmlunit;
+
+import java.io.StringReader;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+import org.custommonkey.xmlunit.exceptions.XpathException;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * JUnit test for StreamingXpathEngine
+ */
+public class test_StreamingXpathEngine extends TestCase {
+
+    private static final String FEED =
+        "<feed xmlns:x='urn:x'>"
+        + "<item id='1' type='book'><title>Dune</title> <price>9</price></item>"
+        + "<item id='2' type='cd'><title>Kind of <![CDATA[Blue]]></title></item>"
+        + "<group><item id='3' type='book'><title>Emma</title>"
+        + "<item id='4'/></item></group>"
+        + "<x:item id='5' x:type='ebook'>Neuromancer</x:item>"
+        + "</feed>";
+
+    private static final String[] STREAMABLE = {
+        "/feed/item", "/feed/item/title", "//item", "//title",
+        "/feed//item[@type='book']", "/feed//item[@type='book']/@id",
+        "//item[@type=\"book\"][@id='3']/title", "//item/@type",
+        "/feed/*", "/feed/*/@id", "//x:item", "//x:*", "//x:item/@x:type",
+        "//item[@x:type]", "//x:item[@x:type='ebook']", "feed/group",
+        "/nothing", "//item[@id='42']", "//item/@missing",
+        "count(//item)", "count(/feed/item)", "count(//item[@type])",
+        "count(//item/@type)", "count( //title )", "count(/nothing)"
+    };
+
+    private StreamingXpathEngine engine;
+    private XpathEngine domEngine;
+    private Document feed;
+
+    public void setUp() throws Exception {
+        HashMap m = new HashMap();
+        m.put("x", "urn:x");
+        NamespaceContext ctx = new SimpleNamespaceContext(m);
+        engine = new StreamingXpathEngine();
+        engine.setNamespaceContext(ctx);
+        domEngine = XMLUnit.newXpathEngine();
+        domEngine.setNamespaceContext(ctx);
+        feed = XMLUnit.buildControlDocument(FEED);
+    }
+
+    public void testSameResultsAsDOMEngine() throws Exception {
+        for (int i = 0; i < STREAMABLE.length; i++) {
+            String select = STREAMABLE[i];
+            assertTrue(select, engine.canStream(select));
+            assertEquals(select, domEngine.evaluate(select, feed),
+                         engine.evaluate(select, source(FEED)));
+            if (!select.startsWith("count(")) {
+                assertEquals(select,
+                             domEngine.getMatchingNodes(select, feed)
+                             .getLength() > 0,
+                             engine.exists(select, source(FEED)));
+            }
+        }
+    }
+
+    public void testUnsupportedExpressionsUseDOMEngine() throws Exception {
+        String[] selects = {
+            "//title/text()", "/feed/item[1]", "count(//item) + 1",
+            "//item[@id>2]", "/feed/item/../group", "//@id",
+            "/feed / item", "string(//title)",
+            "child::feed"
+        };
+        for (int i = 0; i < selects.length; i++) {
+            String select = selects[i];
+            assertFalse(select, engine.canStream(select));
+            assertEquals(select, domEngine.evaluate(select, feed),
+                         engine.evaluate(select, source(FEED)));
+        }
+        assertTrue(engine.exists("//title/text()", source(FEED)));
+        assertFalse(engine.exists("/feed/item[5]", source(FEED)));
+    }
+
+    public void testUnknownPrefixIsReportedByDOMEngine() throws Exception {
+        assertFalse(engine.canStream("//unknown:item"));
+        try {
+            engine.evaluate("//unknown:item", source(FEED));
+            fail("expected an XpathException");
+        } catch (XpathException ex) {
+            // expected
+        }
+    }
+
+    public void testStopsAtFirstMatch() throws Exception {
+        // the document is not well-formed after the first match
+        String broken = "<feed><item id='1'>x</item><item></feed>";
+        assertTrue(engine.exists("//item", source(broken)));
+        assertEquals("1", engine.evaluate("//item/@id", source(broken)));
+        assertEquals("x", engine.evaluate("//item", source(broken)));
+    }
+
+    public void testDeepDocumentInConstantMemory() throws Exception {
+        StringBuffer sb = new StringBuffer("<feed>");
+        for (int i = 0; i < 50000; i++) {
+            sb.append("<item id='").append(i).append("'/>");
+        }
+        sb.append("</feed>");
+        assertEquals("50000",
+                     engine.evaluate("count(/feed/item)", source(sb.toString())));
+        assertEquals("49999", engine.evaluate("/feed/item[@id='49999']/@id",
+                                              source(sb.toString())));
+    }
+
+    private static InputSource source(String xml) {
+        return new InputSource(new StringReader(xml));
+    }
+
+    public test_StreamingXpathEngine(String name) {
+        super(name);
+    }
+}
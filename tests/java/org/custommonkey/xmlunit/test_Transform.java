@@ -38,12 +38,16 @@ package org.custommonkey.xmlunit;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.StringReader;
 
 import org.custommonkey.xmlunit.exceptions.ConfigurationException;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
@@ -144,6 +148,106 @@ public class test_Transform extends TestCase{
         }
     }
 
+    public void testStylesheetIsCompiledOnce() throws Exception {
+        Transform.TEMPLATES.clear();
+        new Transform(FLEABALL, animal).getResultString();
+        new Transform(FLEABALL, animal).getResultString();
+        assertEquals(1, Transform.TEMPLATES.size());
+        String xsl = test_Constants.XSLT_START + test_Constants.XSLT_END;
+        new Transform(FLEABALL, xsl);
+        new Transform(XMLUnit.buildControlDocument(FLEABALL), xsl);
+        assertEquals(2, Transform.TEMPLATES.size());
+    }
+
+    public void testModifiedStylesheetFileIsRecompiled() throws Exception {
+        File xsl = File.createTempFile("xmlunit", ".xsl");
+        try {
+            writeStylesheet(xsl, "dog");
+            transform = new Transform(FLEABALL, xsl);
+            transform.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            assertEquals("<dog/>", transform.getResultString());
+            writeStylesheet(xsl, "cat");
+            xsl.setLastModified(xsl.lastModified() + 2000);
+            transform = new Transform(FLEABALL, xsl);
+            transform.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            assertEquals("<cat/>", transform.getResultString());
+        } finally {
+            xsl.delete();
+        }
+    }
+
+    public void testModifiedStylesheetSystemIdIsRecompiled()
+        throws Exception {
+        File xsl = File.createTempFile("xmlunit", ".xsl");
+        try {
+            writeStylesheet(xsl, "dog");
+            transform = new Transform(new StreamSource(new StringReader(FLEABALL)),
+                                      new StreamSource(xsl));
+            transform.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            assertEquals("<dog/>", transform.getResultString());
+            writeStylesheet(xsl, "cat");
+            xsl.setLastModified(xsl.lastModified() + 2000);
+            transform = new Transform(new StreamSource(new StringReader(FLEABALL)),
+                                      new StreamSource(xsl));
+            transform.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            assertEquals("<cat/>", transform.getResultString());
+        } finally {
+            xsl.delete();
+        }
+    }
+
+    public void testPrecompiledTemplates() throws Exception {
+        Templates templates =
+            XMLUnit.getTransformerFactory().newTemplates(new StreamSource(animal));
+        transform = new Transform(FLEABALL, templates);
+        assertEquals(DOG, stripLineFeeds(transform.getResultString()));
+        transform = new Transform(XMLUnit.buildControlDocument(FLEABALL),
+                                  templates);
+        assertEquals(DOG, stripLineFeeds(transform.getResultString()));
+    }
+
+    public void testResultDocumentIsNotCopiedByDiff() throws Exception {
+        final Document[] result = new Document[1];
+        transform = new Transform(FLEABALL, test_Constants.XSLT_START
+                                  + "<xsl:template match=\"/\">"
+                                  + "<dog><!-- c --><xsl:text> </xsl:text>"
+                                  + "<shaggy/></dog>"
+                                  + "</xsl:template>"
+                                  + test_Constants.XSLT_END) {
+                public Document getResultDocument()
+                    throws javax.xml.transform.TransformerException {
+                    result[0] = super.getResultDocument();
+                    return result[0];
+                }
+            };
+        try {
+            XMLUnit.setIgnoreComments(true);
+            XMLUnit.setIgnoreWhitespace(true);
+            Diff diff = new Diff("<dog><shaggy/></dog>", transform);
+            // looks at nested text and thus requires manipulated documents
+            diff.overrideElementQualifier(new ElementNameAndTextQualifier());
+            assertTrue(diff.toString(), diff.identical());
+            assertEquals(1, result[0].getDocumentElement().getChildNodes()
+                         .getLength());
+        } finally {
+            XMLUnit.setIgnoreComments(false);
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    private static void writeStylesheet(File f, String element)
+        throws Exception {
+        FileWriter w = new FileWriter(f);
+        try {
+            w.write(test_Constants.XSLT_START
+                    + "<xsl:template match=\"/\"><" + element
+                    + "/></xsl:template>"
+                    + test_Constants.XSLT_END);
+        } finally {
+            w.close();
+        }
+    }
+
     private void assertNotEquals(Object expected, Object actual) {
         if (expected.equals(actual)) {
             fail("Expected " + expected + " different to actual!");
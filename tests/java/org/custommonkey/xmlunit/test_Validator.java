@@ -47,6 +47,8 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.StringBufferInputStream;
 import java.io.StringReader;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 /**
  * JUnit test for Validator
@@ -178,6 +180,101 @@ public class test_Validator extends XMLTestCase {
         failXMLTestCaseTest(validator);
     }
 
+    public void testValidationSessionLoadsDTDOnce() throws Exception {
+        writeTempDTDFile();
+        String systemid = tempDTDFile.toURL().toExternalForm();
+        ValidationSession session = new ValidationSession();
+
+        validator = new Validator(new StringReader(test_Constants
+                                                   .CHUCK_JONES_RIP_XML),
+                                  systemid, "cartoons");
+        validator.setValidationSession(session);
+        assertTrue(validator.toString(), validator.isValid());
+        assertEquals(1, session.getCachedEntityCount());
+
+        removeTempDTDFile();
+        validator = new Validator(new StringReader(test_Constants
+                                                   .CHUCK_JONES_RIP_XML),
+                                  systemid, "cartoons");
+        validator.setValidationSession(session);
+        assertTrue(validator.toString(), validator.isValid());
+
+        validator = new Validator(new StringReader(test_Constants
+                                                   .CHUCK_JONES_RIP_XML),
+                                  systemid, "cartoons");
+        assertFalse("DTD has been removed", validator.isValid());
+    }
+
+    public void testConfiguredFactoryIsNotMadeValidating() throws Exception {
+        assertFalse(XMLUnit.getSAXParserFactory().isValidating());
+        writeTempDTDFile();
+        validator = new Validator(new StringReader(test_Constants
+                                                   .CHUCK_JONES_RIP_XML),
+                                  tempDTDFile.toURL().toExternalForm(),
+                                  "cartoons");
+        assertTrue(validator.toString(), validator.isValid());
+        assertFalse(XMLUnit.getSAXParserFactory().isValidating());
+    }
+
+    public void testFeaturesOfConfiguredFactoryAreHonoured()
+        throws Exception {
+        String toonXML = test_Constants.XML_DECLARATION
+            + test_Constants.CHUCK_JONES_RIP_DTD_DECL
+            + test_Constants.CHUCK_JONES_RIP_XML;
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://apache.org/xml/features/"
+                           + "disallow-doctype-decl", true);
+        XMLUnit.setSAXParserFactory(factory);
+        try {
+            validator = new Validator(new StringReader(toonXML));
+            assertFalse(validator.toString(), validator.isValid());
+            assertFalse(factory.isValidating());
+        } finally {
+            XMLUnit.setSAXParserFactory((SAXParserFactory) null);
+        }
+        validator = new Validator(new StringReader(toonXML));
+        assertTrue(validator.toString(), validator.isValid());
+    }
+
+    public void testParserIsOnlyTakenFromPoolForValidation()
+        throws Exception {
+        String toonXML = test_Constants.XML_DECLARATION
+            + test_Constants.CHUCK_JONES_RIP_DTD_DECL
+            + test_Constants.CHUCK_JONES_RIP_XML;
+        Validator.PARSERS.clear();
+        assertTrue(new Validator(new StringReader(toonXML)).isValid());
+        assertEquals(1, Validator.PARSERS.size());
+        validator = new Validator(new StringReader(toonXML));
+        assertEquals(1, Validator.PARSERS.size());
+        assertTrue(validator.isValid());
+        assertEquals(1, Validator.PARSERS.size());
+    }
+
+    public void testPooledParsersAreReset() throws Exception {
+        SAXParserPool pool = new SAXParserPool(1);
+        SAXParser parser = pool.acquire();
+        assertTrue(parser.isValidating());
+        pool.release(parser);
+        assertEquals(1, pool.size());
+        assertSame(parser, pool.acquire());
+
+        parser.setProperty(JAXPConstants.Properties.SCHEMA_LANGUAGE,
+                           XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        pool.release(parser);
+        assertTrue("schema language must not leak",
+                   pool.size() == 0
+                   || pool.acquire().getProperty(JAXPConstants.Properties
+                                                 .SCHEMA_LANGUAGE) == null);
+
+        parser = pool.acquire();
+        SAXParser second = pool.acquire();
+        assertNotSame(parser, second);
+        pool.release(parser);
+        pool.release(second);
+        assertEquals("pool is bounded", 1, pool.size());
+    }
+
     private Document getDocument(String fromXML) throws Exception {
         return XMLUnit.buildControlDocument(fromXML);
     }
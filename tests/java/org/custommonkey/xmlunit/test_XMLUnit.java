@@ -36,6 +36,7 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.custommonkey.xmlunit;
 
+import java.util.HashMap;
 import javax.xml.parsers.DocumentBuilderFactory;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -63,6 +64,17 @@ public class test_XMLUnit extends TestCase{
     /**
      * Test overiding the SAX parser used to parse control documents
      */
+    public void testXpathEngineIsSharedUntilNamespaceContextChanges() {
+        XpathEngine shared = XMLUnit.getSharedXpathEngine();
+        assertSame(shared, XMLUnit.getSharedXpathEngine());
+        XMLUnit.setXpathNamespaceContext(new SimpleNamespaceContext(new HashMap()));
+        try {
+            assertNotSame(shared, XMLUnit.getSharedXpathEngine());
+        } finally {
+            XMLUnit.setXpathNamespaceContext(null);
+        }
+    }
+
     public void testSetControlParser() throws Exception {
         Object before = XMLUnit.newControlParser();
         XMLUnit.setControlParser(getDocumentBuilderFactoryImplClass());